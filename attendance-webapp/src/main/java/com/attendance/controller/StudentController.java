@@ -1,5 +1,7 @@
 package com.attendance.controller;
 
+import com.attendance.dto.StatusCount;
+import com.attendance.dto.SubjectAttendanceCounts;
 import com.attendance.model.*;
 import com.attendance.repository.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -47,25 +49,25 @@ public class StudentController {
             return "redirect:/login";
         }
 
-        List<Attendance> allAttendance = attendanceRepository.findByStudent(student);
-
-        // Calculate statistics
-        long totalClasses = allAttendance.size();
-        long presentCount = allAttendance.stream().filter(a -> a.getStatus() == AttendanceStatus.PRESENT).count();
-        long absentCount = allAttendance.stream().filter(a -> a.getStatus() == AttendanceStatus.ABSENT).count();
-        long lateCount = allAttendance.stream().filter(a -> a.getStatus() == AttendanceStatus.LATE).count();
+        // Per-status totals
+        Map<AttendanceStatus, Long> statusCounts = new EnumMap<>(AttendanceStatus.class);
+        for (StatusCount count : attendanceRepository.countByStudentGroupByStatus(student)) {
+            statusCounts.put(count.status(), count.count());
+        }
+        long presentCount = statusCounts.getOrDefault(AttendanceStatus.PRESENT, 0L);
+        long absentCount = statusCounts.getOrDefault(AttendanceStatus.ABSENT, 0L);
+        long lateCount = statusCounts.getOrDefault(AttendanceStatus.LATE, 0L);
+        long totalClasses = presentCount + absentCount + lateCount;
 
         double attendancePercentage = totalClasses > 0 ? (double) (presentCount + lateCount) / totalClasses * 100 : 0;
 
         // Get subject-wise breakdown
         Map<String, Map<String, Long>> subjectWise = new LinkedHashMap<>();
-        for (Attendance att : allAttendance) {
-            String subjectName = att.getSubject().getName();
-            subjectWise.computeIfAbsent(subjectName, k -> new HashMap<>());
-            Map<String, Long> stats = subjectWise.get(subjectName);
-            stats.merge("total", 1L, Long::sum);
-            if (att.getStatus() == AttendanceStatus.PRESENT || att.getStatus() == AttendanceStatus.LATE) {
-                stats.merge("present", 1L, Long::sum);
+        for (SubjectAttendanceCounts counts : attendanceRepository.countByStudentGroupBySubject(student)) {
+            Map<String, Long> stats = subjectWise.computeIfAbsent(counts.subjectName(), k -> new HashMap<>());
+            stats.merge("total", counts.total(), Long::sum);
+            if (counts.attended() > 0) {
+                stats.merge("present", counts.attended(), Long::sum);
             }
         }
 
@@ -78,7 +80,7 @@ public class StudentController {
         model.addAttribute("lateCount", lateCount);
         model.addAttribute("attendancePercentage", String.format("%.1f", attendancePercentage));
         model.addAttribute("subjectWise", subjectWise);
-        model.addAttribute("recentAttendance", allAttendance.stream().limit(10).toList());
+        model.addAttribute("recentAttendance", attendanceRepository.findTop10ByStudentOrderByDateDescIdDesc(student));
 
         // Detention warning
         boolean inDanger = attendancePercentage < 75;
@@ -130,9 +132,7 @@ public class StudentController {
         }
 
         // Get all unique subjects for the student's section
-        List<TeacherSubject> assignments = teacherSubjectRepository.findAll().stream()
-                .filter(ts -> ts.getSection().getId().equals(student.getSection().getId()))
-                .collect(Collectors.toList());
+        List<TeacherSubject> assignments = teacherSubjectRepository.findBySection(student.getSection());
 
         List<String> subjects = assignments.stream()
                 .map(ts -> ts.getSubject().getName())
@@ -1,7 +1,9 @@
 package com.attendance.controller;
 
+import com.attendance.dto.StudentAttendanceCounts;
 import com.attendance.model.*;
 import com.attendance.repository.*;
+import com.attendance.service.AttendanceMarkingService;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
@@ -25,6 +27,7 @@ public class TeacherController {
     private final AttendanceRepository attendanceRepository;
     private final SubjectRepository subjectRepository;
     private final SectionRepository sectionRepository;
+    private final AttendanceMarkingService attendanceMarkingService;
 
     public TeacherController(
             UserRepository userRepository,
@@ -33,7 +36,8 @@ public class TeacherController {
             StudentRepository studentRepository,
             AttendanceRepository attendanceRepository,
             SubjectRepository subjectRepository,
-            SectionRepository sectionRepository) {
+            SectionRepository sectionRepository,
+            AttendanceMarkingService attendanceMarkingService) {
         this.userRepository = userRepository;
         this.teacherRepository = teacherRepository;
         this.teacherSubjectRepository = teacherSubjectRepository;
@@ -41,6 +45,7 @@ public class TeacherController {
         this.attendanceRepository = attendanceRepository;
         this.subjectRepository = subjectRepository;
         this.sectionRepository = sectionRepository;
+        this.attendanceMarkingService = attendanceMarkingService;
     }
 
     private Teacher getCurrentTeacher(UserDetails userDetails) {
@@ -61,16 +66,15 @@ public class TeacherController {
         List<TeacherSubject> assignments = teacherSubjectRepository.findByTeacher(teacher);
 
         // Count unique sections and subjects
-        long totalSections = assignments.stream().map(TeacherSubject::getSection).distinct().count();
+        List<Section> sections = assignments.stream().map(TeacherSubject::getSection).distinct()
+                .collect(Collectors.toList());
         long totalSubjects = assignments.stream().map(TeacherSubject::getSubject).distinct().count();
 
-        // Count students in assigned sections
-        long totalStudents = assignments.stream()
-                .map(ts -> studentRepository.findBySection(ts.getSection()).size())
-                .mapToLong(Integer::longValue).sum();
+        // Count students in assigned sections in one query, each section once
+        long totalStudents = sections.isEmpty() ? 0 : studentRepository.countBySectionIn(sections);
 
         model.addAttribute("teacherName", teacher.getName());
-        model.addAttribute("totalSections", totalSections);
+        model.addAttribute("totalSections", sections.size());
         model.addAttribute("totalSubjects", totalSubjects);
         model.addAttribute("totalStudents", totalStudents);
         model.addAttribute("assignments", assignments);
@@ -100,10 +104,18 @@ public class TeacherController {
 
     @GetMapping("/students/{sectionId}")
     @ResponseBody
-    public List<Student> getStudentsBySection(@PathVariable Long sectionId) {
+    public List<Map<String, Object>> getStudentsBySection(@PathVariable Long sectionId) {
         Section section = new Section();
         section.setId(sectionId);
-        return studentRepository.findBySection(section);
+
+        // Plain fields only; the lazy section and user are not serialized
+        return studentRepository.findBySection(section).stream().map(s -> {
+            Map<String, Object> studentData = new HashMap<>();
+            studentData.put("id", s.getId());
+            studentData.put("name", s.getName());
+            studentData.put("rollNumber", s.getRollNumber());
+            return studentData;
+        }).collect(Collectors.toList());
     }
 
     @GetMapping("/students/{sectionId}/attendance")
@@ -154,19 +166,9 @@ public class TeacherController {
             return "redirect:/login";
         }
 
-        User markedBy = teacher.getUser();
-        Subject subject = new Subject();
-        subject.setId(subjectId);
-
-        for (int i = 0; i < studentIds.size(); i++) {
-            Student student = new Student();
-            student.setId(studentIds.get(i));
-
-            AttendanceStatus status = AttendanceStatus.valueOf(statuses.get(i));
-            Attendance attendance = new Attendance(student, subject, date, 1, status, markedBy,
-                    status == AttendanceStatus.LATE);
-            attendanceRepository.save(attendance);
-        }
+        List<AttendanceStatus> statusValues = statuses.stream().map(AttendanceStatus::valueOf)
+                .collect(Collectors.toList());
+        attendanceMarkingService.markSection(subjectId, date, 1, studentIds, statusValues, teacher.getUser());
 
         return "redirect:/teacher/dashboard?success=true";
     }
@@ -206,7 +208,11 @@ public class TeacherController {
         // Get all students in the section
         List<Student> students = studentRepository.findBySection(section);
 
-        // Calculate attendance statistics for each student
+        // Attendance statistics for the whole section in one grouped query
+        Map<Long, StudentAttendanceCounts> countsByStudent = attendanceRepository
+                .countBySubjectAndSectionGroupByStudent(subject, section).stream()
+                .collect(Collectors.toMap(StudentAttendanceCounts::studentId, c -> c));
+
         List<Map<String, Object>> studentStats = new ArrayList<>();
         for (Student student : students) {
             Map<String, Object> stats = new HashMap<>();
@@ -214,21 +220,15 @@ public class TeacherController {
             stats.put("name", student.getName());
             stats.put("rollNumber", student.getRollNumber());
 
-            long total = attendanceRepository.countByStudentAndSubject(student, subject);
-            long present = attendanceRepository.countByStudentAndSubjectAndStatus(student, subject,
-                    AttendanceStatus.PRESENT);
-            long absent = attendanceRepository.countByStudentAndSubjectAndStatus(student, subject,
-                    AttendanceStatus.ABSENT);
-            long late = attendanceRepository.countByStudentAndSubjectAndStatus(student, subject, AttendanceStatus.LATE);
-
-            stats.put("totalClasses", total);
-            stats.put("present", present);
-            stats.put("absent", absent);
-            stats.put("late", late);
+            StudentAttendanceCounts counts = countsByStudent.getOrDefault(student.getId(),
+                    new StudentAttendanceCounts(student.getId(), 0, 0, 0, 0));
+            stats.put("totalClasses", counts.total());
+            stats.put("present", counts.present());
+            stats.put("absent", counts.absent());
+            stats.put("late", counts.late());
 
             // Calculate percentage (present + late count as attended)
-            double percentage = total > 0 ? ((present + late) * 100.0 / total) : 0;
-            stats.put("percentage", Math.round(percentage * 10) / 10.0);
+            stats.put("percentage", Math.round(counts.percentage() * 10) / 10.0);
 
             studentStats.add(stats);
         }
@@ -0,0 +1,9 @@
+package com.attendance.dto;
+
+import com.attendance.model.AttendanceStatus;
+
+/**
+ * Number of attendance records with one status
+ */
+public record StatusCount(AttendanceStatus status, long count) {
+}
@@ -0,0 +1,14 @@
+package com.attendance.dto;
+
+/**
+ * Attendance totals of one student in one subject, by status
+ */
+public record StudentAttendanceCounts(Long studentId, long total, long present, long absent, long late) {
+
+    /**
+     * Present and late both count as attended
+     */
+    public double percentage() {
+        return total > 0 ? (present + late) * 100.0 / total : 0;
+    }
+}
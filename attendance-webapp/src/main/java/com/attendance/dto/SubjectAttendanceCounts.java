@@ -0,0 +1,7 @@
+package com.attendance.dto;
+
+/**
+ * Attended (present or late) and total classes of one student in one subject
+ */
+public record SubjectAttendanceCounts(Long subjectId, String subjectName, long attended, long total) {
+}
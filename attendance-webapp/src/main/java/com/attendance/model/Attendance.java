@@ -7,18 +7,27 @@ import java.time.LocalDate;
  * Attendance record entity
  */
 @Entity
-@Table(name = "attendance")
+@NamedEntityGraph(name = "Attendance.withSubject", attributeNodes = @NamedAttributeNode("subject"))
+@Table(name = "attendance", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_attendance_student_subject_date_period",
+                columnNames = { "student_id", "subject_id", "date", "period" })
+}, indexes = {
+        // (student, subject) lookups use the unique constraint's index; a section's day
+        // joins students first and seeks (student, date)
+        @Index(name = "idx_attendance_student_date", columnList = "student_id, date"),
+        @Index(name = "idx_attendance_subject_date", columnList = "subject_id, date")
+})
 public class Attendance {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "student_id", nullable = false)
     private Student student;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "subject_id", nullable = false)
     private Subject subject;
 
@@ -31,7 +40,7 @@ public class Attendance {
     @Column(nullable = false)
     private AttendanceStatus status;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "marked_by")
     private User markedBy;
 
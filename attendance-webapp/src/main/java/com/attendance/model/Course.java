@@ -6,6 +6,7 @@ import jakarta.persistence.*;
  * Course entity
  */
 @Entity
+@NamedEntityGraph(name = "Course.withDepartment", attributeNodes = @NamedAttributeNode("department"))
 @Table(name = "courses")
 public class Course {
 
@@ -13,7 +14,7 @@ public class Course {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "department_id", nullable = false)
     private Department department;
 
@@ -6,6 +6,7 @@ import jakarta.persistence.*;
  * Section entity
  */
 @Entity
+@NamedEntityGraph(name = "Section.withCourse", attributeNodes = @NamedAttributeNode("course"))
 @Table(name = "sections")
 public class Section {
 
@@ -13,7 +14,7 @@ public class Section {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "course_id", nullable = false)
     private Course course;
 
@@ -6,6 +6,7 @@ import jakarta.persistence.*;
  * Student entity
  */
 @Entity
+@NamedEntityGraph(name = "Student.withSection", attributeNodes = @NamedAttributeNode("section"))
 @Table(name = "students")
 public class Student {
 
@@ -13,11 +14,11 @@ public class Student {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "section_id", nullable = false)
     private Section section;
 
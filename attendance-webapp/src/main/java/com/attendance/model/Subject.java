@@ -6,6 +6,7 @@ import jakarta.persistence.*;
  * Subject entity
  */
 @Entity
+@NamedEntityGraph(name = "Subject.withCourse", attributeNodes = @NamedAttributeNode("course"))
 @Table(name = "subjects")
 public class Subject {
 
@@ -13,7 +14,7 @@ public class Subject {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "course_id", nullable = false)
     private Course course;
 
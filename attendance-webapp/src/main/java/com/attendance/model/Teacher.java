@@ -7,17 +7,18 @@ import jakarta.persistence.*;
  */
 @Entity
 @Table(name = "teachers")
+@NamedEntityGraph(name = "Teacher.withDepartment", attributeNodes = @NamedAttributeNode("department"))
 public class Teacher {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "department_id")
     private Department department;
 
@@ -6,6 +6,15 @@ import jakarta.persistence.*;
  * Teacher-Subject-Section assignment entity
  */
 @Entity
+@NamedEntityGraph(name = "TeacherSubject.withSubjectAndSection", attributeNodes = {
+        @NamedAttributeNode("subject"),
+        @NamedAttributeNode(value = "section", subgraph = "section.course")
+}, subgraphs = @NamedSubgraph(name = "section.course", attributeNodes = @NamedAttributeNode("course")))
+@NamedEntityGraph(name = "TeacherSubject.withAll", attributeNodes = {
+        @NamedAttributeNode("teacher"),
+        @NamedAttributeNode("subject"),
+        @NamedAttributeNode("section")
+})
 @Table(name = "teacher_subjects")
 public class TeacherSubject {
 
@@ -13,15 +22,15 @@ public class TeacherSubject {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "teacher_id", nullable = false)
     private Teacher teacher;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "subject_id", nullable = false)
     private Subject subject;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "section_id", nullable = false)
     private Section section;
 
@@ -1,6 +1,10 @@
 package com.attendance.repository;
 
+import com.attendance.dto.StatusCount;
+import com.attendance.dto.StudentAttendanceCounts;
+import com.attendance.dto.SubjectAttendanceCounts;
 import com.attendance.model.*;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -17,6 +21,8 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
 
     List<Attendance> findByStudentAndSubject(Student student, Subject subject);
 
+    // Calendar: records with their subject names
+    @EntityGraph("Attendance.withSubject")
     List<Attendance> findByStudentAndDateBetween(Student student, LocalDate startDate, LocalDate endDate);
 
     @Query("SELECT a FROM Attendance a WHERE a.student.section = :section AND a.date = :date")
@@ -25,17 +31,31 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     @Query("SELECT COUNT(a) FROM Attendance a WHERE a.student = :student AND a.status = :status")
     long countByStudentAndStatus(Student student, AttendanceStatus status);
 
+    // Student dashboard aggregates, computed in the database instead of loading every record
+    @Query("SELECT new com.attendance.dto.StatusCount(a.status, COUNT(a)) FROM Attendance a "
+            + "WHERE a.student = :student GROUP BY a.status")
+    List<StatusCount> countByStudentGroupByStatus(Student student);
+
+    @Query("SELECT new com.attendance.dto.SubjectAttendanceCounts(s.id, s.name, "
+            + "SUM(CASE WHEN a.status <> com.attendance.model.AttendanceStatus.ABSENT THEN 1 ELSE 0 END), COUNT(a)) "
+            + "FROM Attendance a JOIN a.subject s WHERE a.student = :student GROUP BY s.id, s.name ORDER BY s.name")
+    List<SubjectAttendanceCounts> countByStudentGroupBySubject(Student student);
+
+    @EntityGraph("Attendance.withSubject")
+    List<Attendance> findTop10ByStudentOrderByDateDescIdDesc(Student student);
+
     List<Attendance> findByStudentAndSubjectAndDate(Student student, Subject subject, LocalDate date);
 
     @Query("SELECT a FROM Attendance a WHERE a.subject = :subject AND a.date = :date AND a.student.section = :section")
     List<Attendance> findBySubjectAndDateAndSection(Subject subject, LocalDate date, Section section);
 
-    // New methods for teacher reports
-    @Query("SELECT COUNT(a) FROM Attendance a WHERE a.student = :student AND a.subject = :subject AND a.status = :status")
-    long countByStudentAndSubjectAndStatus(Student student, Subject subject, AttendanceStatus status);
-
-    @Query("SELECT COUNT(a) FROM Attendance a WHERE a.student = :student AND a.subject = :subject")
-    long countByStudentAndSubject(Student student, Subject subject);
+    // Per-student totals for a teacher's subject report, one row per student with attendance
+    @Query("SELECT new com.attendance.dto.StudentAttendanceCounts(a.student.id, COUNT(a), "
+            + "SUM(CASE WHEN a.status = com.attendance.model.AttendanceStatus.PRESENT THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN a.status = com.attendance.model.AttendanceStatus.ABSENT THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN a.status = com.attendance.model.AttendanceStatus.LATE THEN 1 ELSE 0 END)) "
+            + "FROM Attendance a WHERE a.subject = :subject AND a.student.section = :section GROUP BY a.student.id")
+    List<StudentAttendanceCounts> countBySubjectAndSectionGroupByStudent(Subject subject, Section section);
 
     @Query("SELECT a FROM Attendance a WHERE a.subject = :subject AND a.student.section = :section ORDER BY a.date DESC")
     List<Attendance> findBySubjectAndSection(Subject subject, Section section);
@@ -2,11 +2,17 @@ package com.attendance.repository;
 
 import com.attendance.model.Course;
 import com.attendance.model.Department;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface CourseRepository extends JpaRepository<Course, Long> {
+    // Admin course list shows each course's department
+    @Override
+    @EntityGraph("Course.withDepartment")
+    List<Course> findAll();
+
     List<Course> findByDepartment(Department department);
 }
@@ -2,11 +2,17 @@ package com.attendance.repository;
 
 import com.attendance.model.Section;
 import com.attendance.model.Course;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface SectionRepository extends JpaRepository<Section, Long> {
+    // Admin section list shows each section's course
+    @Override
+    @EntityGraph("Section.withCourse")
+    List<Section> findAll();
+
     List<Section> findByCourse(Course course);
 }
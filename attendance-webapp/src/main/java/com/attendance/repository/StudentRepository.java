@@ -3,8 +3,10 @@ package com.attendance.repository;
 import com.attendance.model.Student;
 import com.attendance.model.Section;
 import com.attendance.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,5 +14,8 @@ import java.util.Optional;
 public interface StudentRepository extends JpaRepository<Student, Long> {
     List<Student> findBySection(Section section);
 
+    long countBySectionIn(Collection<Section> sections);
+
+    @EntityGraph("Student.withSection")
     Optional<Student> findByUser(User user);
 }
@@ -2,12 +2,18 @@ package com.attendance.repository;
 
 import com.attendance.model.Subject;
 import com.attendance.model.Course;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface SubjectRepository extends JpaRepository<Subject, Long> {
+    // Admin subject list shows each subject's course
+    @Override
+    @EntityGraph("Subject.withCourse")
+    List<Subject> findAll();
+
     List<Subject> findByCourse(Course course);
 
     List<Subject> findBySemester(int semester);
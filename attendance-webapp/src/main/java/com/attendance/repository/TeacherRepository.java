@@ -2,11 +2,18 @@ package com.attendance.repository;
 
 import com.attendance.model.Teacher;
 import com.attendance.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TeacherRepository extends JpaRepository<Teacher, Long> {
+    // Admin allotments teacher list
+    @Override
+    @EntityGraph("Teacher.withDepartment")
+    List<Teacher> findAll();
+
     Optional<Teacher> findByUser(User user);
 }
@@ -1,15 +1,24 @@
 package com.attendance.repository;
 
 import com.attendance.model.*;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface TeacherSubjectRepository extends JpaRepository<TeacherSubject, Long> {
+    // Admin allotments list
+    @Override
+    @EntityGraph("TeacherSubject.withAll")
+    List<TeacherSubject> findAll();
+
+    // Teacher dashboard, reports and mark attendance show subject, section and course names
+    @EntityGraph("TeacherSubject.withSubjectAndSection")
     List<TeacherSubject> findByTeacher(Teacher teacher);
 
     List<TeacherSubject> findBySubject(Subject subject);
 
+    @EntityGraph("TeacherSubject.withSubjectAndSection")
     List<TeacherSubject> findBySection(Section section);
 }
@@ -0,0 +1,78 @@
+package com.attendance.service;
+
+import com.attendance.model.AttendanceStatus;
+import com.attendance.model.User;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Saves a teacher's attendance submission for a whole section
+ *
+ * Rows are upserted on (student, subject, date, period), so submitting the same
+ * class again updates the marks instead of adding duplicates. The merge matches
+ * on those columns rather than on a key, so it also works against a database that
+ * still holds duplicate marks from before the unique key (each copy is updated).
+ * The whole section is sent as one JDBC batch in one transaction.
+ */
+@Service
+public class AttendanceMarkingService {
+
+    private static final String UPSERT_SQL = "MERGE INTO attendance t USING (VALUES (CAST(? AS BIGINT), "
+            + "CAST(? AS BIGINT), CAST(? AS DATE), CAST(? AS INT), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), "
+            + "CAST(? AS BOOLEAN))) s (student_id, subject_id, date, period, status, marked_by, late_entry) "
+            + "ON t.student_id = s.student_id AND t.subject_id = s.subject_id AND t.date = s.date "
+            + "AND t.period = s.period "
+            + "WHEN MATCHED THEN UPDATE SET status = s.status, marked_by = s.marked_by, late_entry = s.late_entry "
+            + "WHEN NOT MATCHED THEN INSERT (student_id, subject_id, date, period, status, marked_by, late_entry) "
+            + "VALUES (s.student_id, s.subject_id, s.date, s.period, s.status, s.marked_by, s.late_entry)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AttendanceMarkingService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Record one status per student for a class; studentIds and statuses are matched by index
+     */
+    @Transactional
+    public void markSection(Long subjectId, LocalDate date, int period, List<Long> studentIds,
+            List<AttendanceStatus> statuses, User markedBy) {
+        if (studentIds.size() != statuses.size()) {
+            throw new IllegalArgumentException("Expected one status per student");
+        }
+
+        Date sqlDate = Date.valueOf(date);
+        Long markedById = markedBy != null ? markedBy.getId() : null;
+        jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                AttendanceStatus status = statuses.get(i);
+                ps.setLong(1, studentIds.get(i));
+                ps.setLong(2, subjectId);
+                ps.setDate(3, sqlDate);
+                ps.setInt(4, period);
+                ps.setString(5, status.name());
+                if (markedById != null) {
+                    ps.setLong(6, markedById);
+                } else {
+                    ps.setNull(6, Types.BIGINT);
+                }
+                ps.setBoolean(7, status == AttendanceStatus.LATE);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return studentIds.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package com.attendance.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import java.util.Map;
+
+/**
+ * Brings an existing database up to the constraints and indexes the entities declare
+ *
+ * Hibernate's ddl-auto=update cannot add the attendance unique key while duplicate
+ * marks exist, and skips indexes it fails to create. Each step here is idempotent
+ * and runs on every startup; depending on the entityManagerFactory bean makes it run
+ * after Hibernate has created or updated the tables.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class SchemaMigrationService {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrationService.class);
+
+    private static final String UNIQUE_KEY = "UK_ATTENDANCE_STUDENT_SUBJECT_DATE_PERIOD";
+
+    // Marks of a class that a later mark of the same class replaces
+    private static final String SUPERSEDED = "EXISTS (SELECT 1 FROM attendance b "
+            + "WHERE b.student_id = a.student_id AND b.subject_id = a.subject_id "
+            + "AND b.date = a.date AND b.period = a.period AND b.id > a.id)";
+
+    // Indexes for the AttendanceRepository query shapes; (student, subject) uses the unique key
+    static final String[] INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_attendance_student_date ON attendance (student_id, date)",
+            "CREATE INDEX IF NOT EXISTS idx_attendance_subject_date ON attendance (subject_id, date)"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaMigrationService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        Integer keys = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS WHERE CONSTRAINT_NAME = ?",
+                Integer.class, UNIQUE_KEY);
+        if (keys == null || keys == 0) {
+            // Keep the latest mark of each class, as a resubmission would have
+            for (Map<String, Object> row : jdbcTemplate.queryForList("SELECT a.id, a.student_id, a.subject_id, "
+                    + "a.date, a.period, a.status, a.marked_by FROM attendance a WHERE " + SUPERSEDED)) {
+                log.warn("Removing duplicate attendance mark {}", row);
+            }
+            int removed = jdbcTemplate.update("DELETE FROM attendance a WHERE " + SUPERSEDED);
+            if (removed > 0) {
+                log.warn("Removed {} duplicate attendance marks, keeping the latest of each class", removed);
+            }
+            jdbcTemplate.execute("ALTER TABLE attendance ADD CONSTRAINT IF NOT EXISTS " + UNIQUE_KEY
+                    + " UNIQUE (student_id, subject_id, date, period)");
+            log.info("Added attendance unique key {}", UNIQUE_KEY);
+        }
+
+        for (String index : INDEXES) {
+            jdbcTemplate.execute(index);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.attendance.controller;
+
+import com.attendance.model.*;
+import com.attendance.repository.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Statement counts of each rendered view, from the request through the template.
+ *
+ * Requests go through the real controllers, repositories and Thymeleaf templates
+ * against an in-memory database. With open-in-view off, a template touching an
+ * association its query did not fetch fails the request; the counts catch queries
+ * added per row. The fixture gives the teacher and student ROWS of everything, so
+ * an N+1 would add at least ROWS statements.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:view-queries;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ViewQueriesTest {
+
+    private static final int ROWS = 6;
+    private static final String TEACHER = "view-teacher";
+    private static final String STUDENT = "view-student";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private SectionRepository sectionRepository;
+
+    @Autowired
+    private SubjectRepository subjectRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private TeacherSubjectRepository teacherSubjectRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    private Statistics statistics;
+    private Section section;
+    private Subject subject;
+    private Student student;
+
+    @BeforeAll
+    void setUp() {
+        List<Section> sections = new ArrayList<>();
+        List<Subject> subjects = new ArrayList<>();
+        List<Teacher> teachers = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Department department = departmentRepository.save(new Department("View Department " + i, "VD" + i, null));
+            Course course = courseRepository.save(new Course(department, "View Course " + i, "VC" + i, 4));
+            sections.add(sectionRepository.save(new Section(course, "V" + i, 1, 2024)));
+            subjects.add(subjectRepository.save(new Subject(course, "View Subject " + i, "VS" + i, 1, 4)));
+            User user = userRepository.save(new User(i == 0 ? TEACHER : TEACHER + i, "x", Role.TEACHER, null));
+            teachers.add(teacherRepository.save(new Teacher(user, "View Teacher " + i, department)));
+        }
+        section = sections.get(0);
+        subject = subjects.get(0);
+
+        // The first teacher teaches every section; every teacher teaches the first section
+        for (int i = 0; i < ROWS; i++) {
+            teacherSubjectRepository.save(new TeacherSubject(teachers.get(0), subjects.get(i), sections.get(i)));
+            if (i > 0) {
+                teacherSubjectRepository.save(new TeacherSubject(teachers.get(i), subjects.get(i), section));
+            }
+        }
+
+        List<Attendance> marks = new ArrayList<>();
+        for (int s = 0; s < ROWS; s++) {
+            User user = userRepository.save(new User(s == 0 ? STUDENT : STUDENT + s, "x", Role.STUDENT, null));
+            Student created = studentRepository.save(new Student(user, sections.get(s % 2), "VR" + s,
+                    "View Student " + s));
+            if (s == 0) {
+                student = created;
+            }
+            for (int d = 0; d < ROWS; d++) {
+                for (Subject markedSubject : subjects) {
+                    marks.add(new Attendance(created, markedSubject, LocalDate.of(2024, 1, 1 + d), 1,
+                            AttendanceStatus.values()[(s + d) % AttendanceStatus.values().length], null, false));
+                }
+            }
+        }
+        attendanceRepository.saveAll(marks);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    @WithMockUser(username = STUDENT, roles = "STUDENT")
+    void studentDashboard() throws Exception {
+        // User, student with section, status totals, subject totals, recent marks with subjects
+        assertStatements(5, get("/student/dashboard"));
+    }
+
+    @Test
+    @WithMockUser(username = STUDENT, roles = "STUDENT")
+    void studentCalendar() throws Exception {
+        // User, student, the month's marks with subjects, the section's assignments with subjects
+        assertStatements(4, get("/student/calendar").param("month", "1").param("year", "2024"));
+    }
+
+    @Test
+    @WithMockUser(username = TEACHER, roles = "TEACHER")
+    void teacherDashboard() throws Exception {
+        // User, teacher, assignments with subject, section and course, student count
+        assertStatements(4, get("/teacher/dashboard"));
+    }
+
+    @Test
+    @WithMockUser(username = TEACHER, roles = "TEACHER")
+    void markAttendancePage() throws Exception {
+        // User, teacher, assignments with subject and section
+        assertStatements(3, get("/teacher/mark-attendance"));
+    }
+
+    @Test
+    @WithMockUser(username = TEACHER, roles = "TEACHER")
+    void studentsWithAttendance() throws Exception {
+        // Students of the section, the class's marks
+        assertStatements(2, get("/teacher/students/" + section.getId() + "/attendance")
+                .param("subjectId", subject.getId().toString()).param("date", "2024-01-01"));
+    }
+
+    @Test
+    @WithMockUser(username = TEACHER, roles = "TEACHER")
+    void markAttendanceSubmission() throws Exception {
+        // User and teacher; the marks themselves go through JDBC, outside Hibernate
+        List<Student> students = studentRepository.findBySection(section);
+        MockHttpServletRequestBuilder request = post("/teacher/mark-attendance").with(csrf())
+                .param("subjectId", subject.getId().toString())
+                .param("sectionId", section.getId().toString())
+                .param("date", "2024-02-01");
+        for (Student s : students) {
+            request.param("studentIds", s.getId().toString()).param("statuses", "PRESENT");
+        }
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().is3xxRedirection());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    @WithMockUser(username = TEACHER, roles = "TEACHER")
+    void reports() throws Exception {
+        // User, teacher, assignments with subject, section and course
+        assertStatements(3, get("/teacher/reports"));
+    }
+
+    @Test
+    @WithMockUser(username = TEACHER, roles = "TEACHER")
+    void reportDetail() throws Exception {
+        // User, teacher, subject, section, the section's students, grouped counts
+        assertStatements(6, get("/teacher/reports/" + subject.getId() + "/" + section.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = TEACHER, roles = "TEACHER")
+    void studentAttendanceDetail() throws Exception {
+        // User, teacher, student, subject, the student's marks in the subject
+        assertStatements(5, get("/teacher/reports/student/" + student.getId() + "/" + subject.getId()));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminDashboard() throws Exception {
+        // One count per entity
+        assertStatements(6, get("/admin/dashboard"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminDepartments() throws Exception {
+        assertStatements(1, get("/admin/departments"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminCourses() throws Exception {
+        // Courses with departments, departments
+        assertStatements(2, get("/admin/courses"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminSubjects() throws Exception {
+        // Subjects with courses, courses
+        assertStatements(2, get("/admin/subjects"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminSections() throws Exception {
+        // Sections with courses, courses
+        assertStatements(2, get("/admin/sections"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminUsers() throws Exception {
+        // Users, sections
+        assertStatements(2, get("/admin/users"));
+    }
+
+    @Test
+    @WithMockUser(roles = "ADMIN")
+    void adminAllotments() throws Exception {
+        // Allotments with teacher, subject and section, then teachers, subjects and sections
+        assertStatements(4, get("/admin/allotments"));
+    }
+
+    private void assertStatements(int expected, MockHttpServletRequestBuilder request) throws Exception {
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,81 @@
+package com.attendance.repository;
+
+import com.attendance.dto.StudentAttendanceCounts;
+import com.attendance.model.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statement counts of the teacher report queries
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AttendanceRepositoryTest {
+
+    private static final int STUDENTS = 30;
+    private static final int DAYS = 5;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    private Subject subject;
+    private Section section;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Department department = entityManager.persist(new Department("Computer Science", "CS", null));
+        Course course = entityManager.persist(new Course(department, "B.Tech", "BT", 4));
+        section = entityManager.persist(new Section(course, "A", 1, 2024));
+        Section otherSection = entityManager.persist(new Section(course, "B", 1, 2024));
+        subject = entityManager.persist(new Subject(course, "Algorithms", "CS101", 1, 4));
+
+        AttendanceStatus[] statuses = AttendanceStatus.values();
+        for (int s = 0; s < STUDENTS; s++) {
+            Section studentSection = s % 10 == 9 ? otherSection : section;
+            User user = entityManager.persist(new User("student" + s, "x", Role.STUDENT, null));
+            Student student = entityManager.persist(new Student(user, studentSection, "R" + s, "Student " + s));
+            for (int d = 0; d < DAYS; d++) {
+                entityManager.persist(new Attendance(student, subject, LocalDate.of(2024, 1, 1 + d), 1,
+                        statuses[(s + d) % statuses.length], null, false));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void sectionReportCountsInOneStatement() {
+        List<StudentAttendanceCounts> counts = attendanceRepository.countBySubjectAndSectionGroupByStudent(subject,
+                section);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        // Students 9, 19 and 29 are in the other section
+        assertThat(counts).hasSize(STUDENTS - 3);
+        Map<Long, StudentAttendanceCounts> byStudent = counts.stream()
+                .collect(Collectors.toMap(StudentAttendanceCounts::studentId, c -> c));
+        for (StudentAttendanceCounts c : byStudent.values()) {
+            assertThat(c.total()).isEqualTo(DAYS);
+            assertThat(c.present() + c.absent() + c.late()).isEqualTo(DAYS);
+        }
+    }
+}
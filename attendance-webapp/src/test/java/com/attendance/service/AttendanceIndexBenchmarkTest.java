@@ -0,0 +1,210 @@
+package com.attendance.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The attendance indexes against the queries they were added for
+ *
+ * Builds the attendance table as it was before the migration (primary key, unique
+ * key, foreign keys), then applies SchemaMigrationService.INDEXES. The small run
+ * always checks that H2 plans each hot query through its index; the 5M-row run
+ * times every hot query before and after, and only runs when asked for:
+ *   mvn test -Dtest=AttendanceIndexBenchmarkTest -Dattendance.benchmark=true
+ */
+class AttendanceIndexBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceIndexBenchmarkTest.class);
+
+    private static final int SECTION_SIZE = 50;
+    private static final int SUBJECTS_PER_SECTION = 5;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+    private static final int ITERATIONS = 50;
+
+    /**
+     * One AttendanceRepository query in SQL, with the index it should use (null when
+     * any student_id or subject_id index serves it equally well)
+     */
+    private record HotQuery(String name, String sql, String index) {
+
+        /**
+         * The shared parameters up to the highest one this query uses; H2 rejects the rest
+         */
+        Object[] bind(Object[] parameters) {
+            int used = 0;
+            Matcher matcher = Pattern.compile("\\?(\\d)").matcher(sql);
+            while (matcher.find()) {
+                used = Math.max(used, Integer.parseInt(matcher.group(1)));
+            }
+            return Arrays.copyOf(parameters, used);
+        }
+    }
+
+    // Parameters: student, section, subject, date, date
+    private static final HotQuery[] HOT_QUERIES = {
+            new HotQuery("calendar (findByStudentAndDateBetween)",
+                    "SELECT a.* FROM attendance a WHERE a.student_id = ?1 AND a.date BETWEEN ?4 AND ?5",
+                    "IDX_ATTENDANCE_STUDENT_DATE"),
+            new HotQuery("mark page (findBySubjectAndDateAndSection)",
+                    "SELECT a.* FROM attendance a JOIN students s ON s.id = a.student_id "
+                            + "WHERE a.subject_id = ?3 AND a.date = ?4 AND s.section_id = ?2",
+                    "IDX_ATTENDANCE_SUBJECT_DATE"),
+            new HotQuery("section day (findBySectionAndDate)",
+                    "SELECT a.* FROM attendance a JOIN students s ON s.id = a.student_id "
+                            + "WHERE s.section_id = ?2 AND a.date = ?4",
+                    "IDX_ATTENDANCE_STUDENT_DATE"),
+            new HotQuery("recent (findTop10ByStudentOrderByDateDescIdDesc)",
+                    "SELECT a.* FROM attendance a WHERE a.student_id = ?1 ORDER BY a.date DESC, a.id DESC LIMIT 10",
+                    null),
+            new HotQuery("section report (countBySubjectAndSectionGroupByStudent)",
+                    "SELECT a.student_id, COUNT(*), SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END) "
+                            + "FROM attendance a JOIN students s ON s.id = a.student_id "
+                            + "WHERE a.subject_id = ?3 AND s.section_id = ?2 GROUP BY a.student_id",
+                    null)
+    };
+
+    @TempDir
+    Path dataDir;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:file:" + dataDir.resolve("attendance"), "sa", "",
+                true);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Test
+    void hotQueriesUseTheirIndexes() {
+        seed(200, 20);
+        migrate();
+
+        for (HotQuery query : HOT_QUERIES) {
+            if (query.index() == null) {
+                continue;
+            }
+            String plan = jdbc.queryForObject("EXPLAIN " + query.sql(), String.class, query.bind(parameters(200, 7)));
+            assertThat(plan).as(query.name()).contains(query.index());
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "attendance.benchmark", matches = "true")
+    void fiveMillionRows() {
+        int students = 5_000;
+        int days = 200;
+        long start = System.nanoTime();
+        seed(students, days);
+        log.info("Seeded {} attendance rows in {} ms", jdbc.queryForObject("SELECT COUNT(*) FROM attendance",
+                Long.class), (System.nanoTime() - start) / 1_000_000);
+
+        double[] before = timeAll(students, days);
+        start = System.nanoTime();
+        migrate();
+        log.info("Created the indexes in {} ms", (System.nanoTime() - start) / 1_000_000);
+        double[] after = timeAll(students, days);
+
+        for (int q = 0; q < HOT_QUERIES.length; q++) {
+            String plan = jdbc.queryForObject("EXPLAIN " + HOT_QUERIES[q].sql(), String.class,
+                    HOT_QUERIES[q].bind(parameters(students, days / 2)));
+            log.info("{}: {} ms -> {} ms\n  {}", HOT_QUERIES[q].name(), String.format("%.2f", before[q]),
+                    String.format("%.2f", after[q]), plan.replace('\n', ' '));
+        }
+    }
+
+    /**
+     * The pre-migration schema, filled with SUBJECTS_PER_SECTION marks a day for
+     * every student; students sit in sections of SECTION_SIZE
+     */
+    private void seed(int students, int days) {
+        int sections = students / SECTION_SIZE;
+        jdbc.execute("CREATE TABLE subjects (id BIGINT PRIMARY KEY)");
+        jdbc.execute("CREATE TABLE students (id BIGINT PRIMARY KEY, section_id BIGINT NOT NULL)");
+        jdbc.execute("CREATE INDEX idx_students_section ON students (section_id)");
+        jdbc.execute("CREATE TABLE attendance (id BIGINT PRIMARY KEY, student_id BIGINT NOT NULL, "
+                + "subject_id BIGINT NOT NULL, date DATE NOT NULL, period INT NOT NULL, "
+                + "status VARCHAR(255) NOT NULL, marked_by BIGINT, late_entry BOOLEAN NOT NULL, "
+                + "edit_reason VARCHAR(255), CONSTRAINT uk_attendance_student_subject_date_period "
+                + "UNIQUE (student_id, subject_id, date, period))");
+        jdbc.execute("ALTER TABLE attendance ADD FOREIGN KEY (student_id) REFERENCES students (id)");
+        jdbc.execute("ALTER TABLE attendance ADD FOREIGN KEY (subject_id) REFERENCES subjects (id)");
+
+        jdbc.update("INSERT INTO subjects SELECT X FROM SYSTEM_RANGE(1, ?)", sections * SUBJECTS_PER_SECTION);
+        jdbc.update("INSERT INTO students SELECT X, MOD(X - 1, ?) + 1 FROM SYSTEM_RANGE(1, ?)", sections, students);
+
+        // Row x: student x mod students, that student's section's subject (x / students) mod
+        // SUBJECTS_PER_SECTION, day x / (students * SUBJECTS_PER_SECTION)
+        // (H2 cannot infer a parameter's type inside DATEADD, so each one is cast)
+        long perDay = (long) students * SUBJECTS_PER_SECTION;
+        jdbc.update("INSERT INTO attendance (id, student_id, subject_id, date, period, status, late_entry) "
+                + "SELECT X + 1, MOD(X, P.S) + 1, MOD(MOD(X, P.S), P.SEC) * P.SUB + MOD(X / P.S, P.SUB) + 1, "
+                + "DATEADD(DAY, X / P.D, P.FIRST), 1, "
+                + "CASE MOD(X, 10) WHEN 0 THEN 'ABSENT' WHEN 1 THEN 'LATE' ELSE 'PRESENT' END, FALSE "
+                + "FROM SYSTEM_RANGE(0, CAST(?6 AS BIGINT)), (SELECT CAST(?1 AS BIGINT) S, CAST(?2 AS BIGINT) SEC, "
+                + "CAST(?3 AS BIGINT) SUB, CAST(?4 AS BIGINT) D, CAST(?5 AS DATE) FIRST) P",
+                students, sections, SUBJECTS_PER_SECTION, perDay, Date.valueOf(FIRST_DAY), perDay * days - 1);
+        jdbc.execute("ANALYZE");
+    }
+
+    private void migrate() {
+        for (String index : SchemaMigrationService.INDEXES) {
+            jdbc.execute(index);
+        }
+        jdbc.execute("ANALYZE");
+    }
+
+    /**
+     * Average milliseconds per run of each hot query, spread over students, sections and days
+     */
+    private double[] timeAll(int students, int days) {
+        double[] millis = new double[HOT_QUERIES.length];
+        for (int q = 0; q < HOT_QUERIES.length; q++) {
+            HotQuery query = HOT_QUERIES[q];
+            jdbc.queryForList(query.sql(), query.bind(parameters(students, 0))); // warm up
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                jdbc.queryForList(query.sql(), query.bind(parameters(students, i * 7 % days, i * 97 % students)));
+            }
+            millis[q] = (System.nanoTime() - start) / 1e6 / ITERATIONS;
+        }
+        return millis;
+    }
+
+    private static Object[] parameters(int students, int day) {
+        return parameters(students, day, 0);
+    }
+
+    /**
+     * Parameters 1-5 of the hot queries for the given student: the student, their
+     * section, their section's first subject, and a week from the given day
+     */
+    private static Object[] parameters(int students, int day, int student) {
+        int sections = students / SECTION_SIZE;
+        int section = student % sections;
+        LocalDate from = FIRST_DAY.plusDays(day);
+        return new Object[] { student + 1, section + 1, section * SUBJECTS_PER_SECTION + 1,
+                Date.valueOf(from), Date.valueOf(from.plusDays(6)) };
+    }
+}
@@ -0,0 +1,87 @@
+package com.attendance.service;
+
+import com.attendance.model.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Section submissions against a fresh table and against one that still holds
+ * duplicate marks from before the unique key
+ */
+@DataJpaTest
+@Import(AttendanceMarkingService.class)
+class AttendanceMarkingServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 15);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AttendanceMarkingService markingService;
+
+    private Subject subject;
+    private Student first;
+    private Student second;
+    private User teacher;
+
+    @BeforeEach
+    void setUp() {
+        Department department = entityManager.persist(new Department("Computer Science", "CS", null));
+        Course course = entityManager.persist(new Course(department, "B.Tech", "BT", 4));
+        Section section = entityManager.persist(new Section(course, "A", 1, 2024));
+        subject = entityManager.persist(new Subject(course, "Algorithms", "CS101", 1, 4));
+        teacher = entityManager.persist(new User("teacher", "x", Role.TEACHER, null));
+        first = entityManager.persist(new Student(entityManager.persist(new User("s1", "x", Role.STUDENT, null)),
+                section, "R1", "Student 1"));
+        second = entityManager.persist(new Student(entityManager.persist(new User("s2", "x", Role.STUDENT, null)),
+                section, "R2", "Student 2"));
+        entityManager.flush();
+    }
+
+    @Test
+    void resubmittingUpdatesInPlace() {
+        mark(AttendanceStatus.ABSENT, AttendanceStatus.PRESENT);
+        mark(AttendanceStatus.PRESENT, AttendanceStatus.LATE);
+
+        assertThat(statuses(first)).containsExactly("PRESENT");
+        assertThat(statuses(second)).containsExactly("LATE");
+    }
+
+    @Test
+    void marksOverExistingDuplicates() {
+        jdbcTemplate.execute("ALTER TABLE attendance DROP CONSTRAINT IF EXISTS "
+                + "uk_attendance_student_subject_date_period");
+        for (int i = 0; i < 2; i++) {
+            jdbcTemplate.update("INSERT INTO attendance (student_id, subject_id, date, period, status, late_entry) "
+                    + "VALUES (?, ?, ?, 1, 'ABSENT', FALSE)", first.getId(), subject.getId(), DAY);
+        }
+
+        mark(AttendanceStatus.PRESENT, AttendanceStatus.LATE);
+
+        assertThat(statuses(first)).containsExactly("PRESENT", "PRESENT");
+        assertThat(statuses(second)).containsExactly("LATE");
+    }
+
+    private void mark(AttendanceStatus firstStatus, AttendanceStatus secondStatus) {
+        markingService.markSection(subject.getId(), DAY, 1, List.of(first.getId(), second.getId()),
+                List.of(firstStatus, secondStatus), teacher);
+    }
+
+    private List<String> statuses(Student student) {
+        return jdbcTemplate.queryForList("SELECT status FROM attendance WHERE student_id = ? AND subject_id = ? "
+                + "AND date = ? AND period = 1", String.class, student.getId(), subject.getId(), DAY);
+    }
+}
@@ -0,0 +1,56 @@
+package com.attendance.service;
+
+import com.attendance.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The migration on a database that still holds duplicate marks and no unique key
+ */
+@DataJpaTest
+@ExtendWith(OutputCaptureExtension.class)
+class SchemaMigrationServiceTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void keepsTheLatestMarkAndLogsTheRest(CapturedOutput output) {
+        Department department = entityManager.persist(new Department("Computer Science", "CS", null));
+        Course course = entityManager.persist(new Course(department, "B.Tech", "BT", 4));
+        Section section = entityManager.persist(new Section(course, "A", 1, 2024));
+        Subject subject = entityManager.persist(new Subject(course, "Algorithms", "CS101", 1, 4));
+        Student student = entityManager.persist(new Student(
+                entityManager.persist(new User("s1", "x", Role.STUDENT, null)), section, "R1", "Student 1"));
+        entityManager.flush();
+
+        jdbcTemplate.execute("ALTER TABLE attendance DROP CONSTRAINT IF EXISTS "
+                + "uk_attendance_student_subject_date_period");
+        for (String status : new String[] { "ABSENT", "LATE", "PRESENT" }) {
+            jdbcTemplate.update("INSERT INTO attendance (student_id, subject_id, date, period, status, late_entry) "
+                    + "VALUES (?, ?, ?, 1, ?, FALSE)", student.getId(), subject.getId(), LocalDate.of(2024, 1, 15),
+                    status);
+        }
+
+        new SchemaMigrationService(jdbcTemplate).migrate();
+
+        assertThat(jdbcTemplate.queryForList("SELECT status FROM attendance", String.class))
+                .containsExactly("PRESENT");
+        assertThat(output).contains("Removing duplicate attendance mark", "ABSENT", "LATE")
+                .contains("Removed 2 duplicate attendance marks");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS "
+                + "WHERE CONSTRAINT_NAME = 'UK_ATTENDANCE_STUDENT_SUBJECT_DATE_PERIOD'", Integer.class)).isEqualTo(1);
+    }
+}
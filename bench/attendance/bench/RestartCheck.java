@@ -0,0 +1,221 @@
+package attendance.bench;
+
+import attendance.database.DataPersistence;
+import attendance.database.DataStore;
+import attendance.models.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Regression check for what survives a restart
+ * Each step runs in a fresh JVM against the same data folder, the way the app is
+ * stopped and started again, and the check fails when a restart loses logged marks.
+ *
+ * Run from an empty scratch directory; the store writes its data folder there:
+ *   java -cp <project>/bin;<project>/bench-bin attendance.bench.RestartCheck
+ */
+public class RestartCheck {
+    private static final Path DATA_DIR = Paths.get("data");
+    private static final int MARKS = 25;
+    private static final List<Integer> PERIODS = List.of(1, 127, 128, 255, 256, 1000);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            runStep(args[0]);
+            return;
+        }
+        if (Files.exists(DATA_DIR)) {
+            System.err.println("[RestartCheck] Refusing to run next to an existing data folder");
+            System.exit(2);
+        }
+
+        boolean passed;
+        try {
+            // Marks logged on top of a snapshot whose attendance segment is empty, then on
+            // top of one whose segment is loaded by a deferred load
+            passed = step("empty-segment") && step("expect-marks")
+                    && step("full-segment") && step("expect-more-marks")
+                    // A deferred load that fails is retried once the segment is readable again
+                    && step("break-segment-row") && step("expect-load-retry")
+                    // Periods past one byte, from the segment and from the log
+                    && step("wide-periods") && step("expect-wide-periods")
+                    // An unreadable snapshot is set aside with the unreplayed log
+                    && step("break-snapshot") && step("expect-set-aside");
+        } finally {
+            deleteRecursively(DATA_DIR);
+        }
+
+        System.out.println("[RestartCheck] " + (passed ? "All checks passed" : "FAILED"));
+        if (!passed)
+            System.exit(1);
+    }
+
+    /**
+     * Run one step in a new JVM; true when it exits cleanly
+     */
+    private static boolean step(String name) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                RestartCheck.class.getName(), name).inheritIO().start();
+        int exit = process.waitFor();
+        System.out.println("[RestartCheck] " + name + ": " + (exit == 0 ? "ok" : "failed (exit " + exit + ")"));
+        return exit == 0;
+    }
+
+    private static void runStep(String name) {
+        DataStore store = DataStore.getInstance();
+        switch (name) {
+            case "empty-segment" -> {
+                store.setLoadedData(store.getAllUsers(), store.getAllDepartments(), store.getAllCourses(),
+                        store.getAllSubjects(), store.getAllSections(), store.getAllStudents(),
+                        store.getAllTeachers(), List.of(), store.getAllTeacherSubjects(), store.getAttendanceRule(),
+                        store.getNextIds());
+                DataPersistence.saveData(store);
+                markClasses(store, LocalDate.of(2030, 1, 1));
+                DataPersistence.flush();
+            }
+            case "expect-marks" -> expectMarks(store, MARKS);
+            case "full-segment" -> {
+                DataPersistence.saveData(store);
+                markClasses(store, LocalDate.of(2031, 1, 1));
+                DataPersistence.flush();
+            }
+            case "expect-more-marks" -> expectMarks(store, MARKS * 2);
+            case "break-segment-row" -> {
+                DataPersistence.saveData(store);
+                writeFirstStatus((byte) 9);
+            }
+            case "expect-load-retry" -> {
+                try {
+                    store.getAllAttendance();
+                    expect(false, "attendance loaded from a broken segment");
+                } catch (IllegalStateException e) {
+                    System.out.println("[RestartCheck] Broken segment reported: " + e.getMessage());
+                }
+                expect(!store.getAllUsers().isEmpty(), "users unavailable while attendance failed to load");
+                writeFirstStatus((byte) AttendanceStatus.PRESENT.ordinal());
+                expectMarks(store, MARKS * 2);
+            }
+            case "wide-periods" -> {
+                markPeriods(store, LocalDate.of(2033, 1, 1));
+                DataPersistence.saveData(store);
+                markPeriods(store, LocalDate.of(2033, 1, 2));
+                DataPersistence.flush();
+            }
+            case "expect-wide-periods" -> {
+                for (LocalDate date : List.of(LocalDate.of(2033, 1, 1), LocalDate.of(2033, 1, 2))) {
+                    List<Integer> periods = new ArrayList<>();
+                    for (Attendance a : store.getAttendanceByDate(date))
+                        periods.add(a.getPeriod());
+                    Collections.sort(periods);
+                    expect(periods.equals(PERIODS), date + ": expected periods " + PERIODS + ", found " + periods);
+                }
+            }
+            case "break-snapshot" -> {
+                markClasses(store, LocalDate.of(2032, 1, 1));
+                DataPersistence.flush();
+                truncateToHalf(DATA_DIR.resolve("attendance_data.bin"));
+            }
+            case "expect-set-aside" -> {
+                expect(store.getUserByUsername("admin") != null, "no sample data after a failed load");
+                Path setAside = setAsideFolder();
+                expect(setAside != null, "no failed-load folder");
+                expect(size(setAside.resolve("attendance_data.wal")) > 0, "log was not kept");
+                expect(size(setAside.resolve("attendance_data.bin")) > 0, "snapshot was not kept");
+            }
+            default -> throw new IllegalArgumentException("Unknown step " + name);
+        }
+        System.exit(0);
+    }
+
+    private static void markClasses(DataStore store, LocalDate start) {
+        Student student = new ArrayList<>(store.getAllStudents()).get(0);
+        Subject subject = new ArrayList<>(store.getAllSubjects()).get(0);
+        for (int i = 0; i < MARKS; i++)
+            store.addAttendance(student.getId(), subject.getId(), start.plusDays(i), 1,
+                    AttendanceStatus.PRESENT, 1, false);
+    }
+
+    /**
+     * Overwrite the status byte of the first row in the current segment
+     */
+    private static void writeFirstStatus(byte status) {
+        Path segment = newest("attendance_data.*.seg");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // 24-byte header, then the row: id, studentId, subjectId, epochDay, period, status
+            channel.write(ByteBuffer.wrap(new byte[] { status }), 24 + 20);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void truncateToHalf(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path setAsideFolder() {
+        return newest("failed-load-*");
+    }
+
+    private static Path newest(String glob) {
+        Path newest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DATA_DIR, glob)) {
+            for (Path file : files) {
+                if (newest == null || file.getFileName().toString().compareTo(newest.getFileName().toString()) > 0)
+                    newest = file;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return newest;
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void markPeriods(DataStore store, LocalDate date) {
+        Student student = new ArrayList<>(store.getAllStudents()).get(0);
+        Subject subject = new ArrayList<>(store.getAllSubjects()).get(0);
+        for (int period : PERIODS)
+            store.addAttendance(student.getId(), subject.getId(), date, period, AttendanceStatus.LATE, 1, true);
+    }
+
+    private static void expectMarks(DataStore store, int marks) {
+        int found = store.getAllAttendance().size();
+        expect(found == marks, "expected " + marks + " attendance records, found " + found);
+    }
+
+    private static void expect(boolean condition, String message) {
+        if (!condition) {
+            System.err.println("[RestartCheck] " + message);
+            System.exit(1);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir))
+            return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package attendance.bench;
+
+import attendance.database.DataPersistence;
+import attendance.database.DataStore;
+import attendance.models.*;
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot size and load time, binary format against the old Java serialization
+ * Saves a store holding the given number of attendance records (1M by default)
+ * both ways, then reads each back.
+ *
+ * Run from an empty scratch directory; the store writes its data folder there:
+ *   java -cp <project>/bin;<project>/bench-bin attendance.bench.SnapshotBenchmark [records]
+ */
+public class SnapshotBenchmark {
+    private static final Path DATA_DIR = Paths.get("data");
+    private static final Path LEGACY_FILE = Paths.get("snapshot-benchmark.dat");
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        if (Files.exists(DATA_DIR)) {
+            System.err.println("[SnapshotBenchmark] Refusing to run next to an existing data folder");
+            System.exit(2);
+        }
+
+        DataStore store = DataStore.getInstance();
+        try {
+            List<Attendance> attendance = generate(records);
+            store.setLoadedData(store.getAllUsers(), store.getAllDepartments(), store.getAllCourses(),
+                    store.getAllSubjects(), store.getAllSections(), store.getAllStudents(), store.getAllTeachers(),
+                    attendance, store.getAllTeacherSubjects(), store.getAttendanceRule(),
+                    new int[] { 100, 100, 100, 100, 100, 100, 100, records + 1 });
+
+            long start = System.nanoTime();
+            writeLegacy(store, attendance);
+            long legacyWrite = System.nanoTime() - start;
+            start = System.nanoTime();
+            int legacyRows = readLegacy();
+            long legacyRead = System.nanoTime() - start;
+            report("serialized", Files.size(LEGACY_FILE), legacyWrite, legacyRead, legacyRows);
+
+            start = System.nanoTime();
+            DataPersistence.saveData(store);
+            long binaryWrite = System.nanoTime() - start;
+            start = System.nanoTime();
+            DataPersistence.loadData(store);
+            store.getOverallAttendancePercentage(); // waits for the rows to be indexed
+            long binaryRead = System.nanoTime() - start;
+            report("binary", dataSize(), binaryWrite, binaryRead, records);
+        } finally {
+            DataPersistence.clearData();
+            Files.deleteIfExists(LEGACY_FILE);
+            Files.deleteIfExists(DATA_DIR);
+        }
+    }
+
+    private static List<Attendance> generate(int records) {
+        List<Attendance> attendance = new ArrayList<>(records);
+        LocalDate start = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < records; i++) {
+            Attendance a = new Attendance(i + 1, 1000 + i % 60, 1 + i % 6, start.plusDays(i / 360),
+                    1 + (i / 60) % 6, AttendanceStatus.values()[i % 3], 1, i % 7 == 0);
+            if (i % 1000 == 0)
+                a.setEditReason("Corrected after review");
+            attendance.add(a);
+        }
+        return attendance;
+    }
+
+    /**
+     * Write the collections the way the old attendance_data.dat was written
+     */
+    private static void writeLegacy(DataStore store, List<Attendance> attendance) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(LEGACY_FILE)))) {
+            out.writeObject(new ArrayList<>(store.getAllUsers()));
+            out.writeObject(new ArrayList<>(store.getAllDepartments()));
+            out.writeObject(new ArrayList<>(store.getAllCourses()));
+            out.writeObject(new ArrayList<>(store.getAllSubjects()));
+            out.writeObject(new ArrayList<>(store.getAllSections()));
+            out.writeObject(new ArrayList<>(store.getAllStudents()));
+            out.writeObject(new ArrayList<>(store.getAllTeachers()));
+            out.writeObject(attendance);
+            out.writeObject(new ArrayList<>(store.getAllTeacherSubjects()));
+            out.writeObject(store.getAttendanceRule());
+            out.writeObject(store.getNextIds());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int readLegacy() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(LEGACY_FILE)))) {
+            for (int i = 0; i < 7; i++)
+                in.readObject();
+            return ((List<Attendance>) in.readObject()).size();
+        }
+    }
+
+    /**
+     * Snapshot file plus its attendance segment
+     */
+    private static long dataSize() throws IOException {
+        long size = 0;
+        try (Stream<Path> files = Files.list(DATA_DIR)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".bin") || name.endsWith(".seg"))
+                    size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private static void report(String format, long bytes, long writeNanos, long readNanos, int rows) {
+        System.out.printf("[SnapshotBenchmark] %-10s %,7.1f MB  write %,6d ms  load %,6d ms  (%,d rows)%n",
+                format, bytes / 1e6, writeNanos / 1_000_000, readNanos / 1_000_000, rows);
+    }
+}
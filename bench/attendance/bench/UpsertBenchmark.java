@@ -0,0 +1,97 @@
+package attendance.bench;
+
+import attendance.database.DataPersistence;
+import attendance.database.DataStore;
+import attendance.models.*;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Regression benchmark for attendance upserts
+ * Marks a 60-student class (one insert and one update per student) against stores
+ * holding more and more history, and fails when the cost grows with the history.
+ *
+ * Run from an empty scratch directory; the store writes its data folder there:
+ *   java -cp <project>/bin;<project>/bench-bin attendance.bench.UpsertBenchmark
+ */
+public class UpsertBenchmark {
+    private static final int CLASS_SIZE = 60;
+    private static final int[] HISTORY_SIZES = { 0, 10_000, 100_000, 1_000_000 };
+    private static final int ROUNDS = 200;
+
+    // Upserts against the largest history may cost at most this many times the smallest
+    private static final double MAX_SLOWDOWN = 4.0;
+
+    public static void main(String[] args) throws Exception {
+        if (Files.exists(Paths.get("data"))) {
+            System.err.println("[UpsertBenchmark] Refusing to run next to an existing data folder");
+            System.exit(2);
+        }
+
+        DataStore store = DataStore.getInstance();
+        double slowdown;
+        try {
+            double first = 0;
+            double last = 0;
+            for (int history : HISTORY_SIZES) {
+                loadHistory(store, history);
+                measure(store, LocalDate.of(2030, 1, 1)); // warm up
+                double nanos = measure(store, LocalDate.of(2031, 1, 1));
+                if (history == HISTORY_SIZES[0])
+                    first = nanos;
+                last = nanos;
+                System.out.printf("[UpsertBenchmark] history=%,9d  %,8.0f ns/upsert%n", history, nanos);
+            }
+
+            slowdown = last / first;
+        } finally {
+            DataPersistence.clearData();
+            Files.deleteIfExists(Paths.get("data"));
+        }
+
+        System.out.printf("[UpsertBenchmark] %,d vs %,d records: %.2fx%n",
+                HISTORY_SIZES[HISTORY_SIZES.length - 1], HISTORY_SIZES[0], slowdown);
+        if (slowdown > MAX_SLOWDOWN) {
+            System.err.println("[UpsertBenchmark] Upsert cost grows with history size");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replace the store's attendance with the given number of generated records
+     */
+    private static void loadHistory(DataStore store, int history) {
+        List<Attendance> records = new ArrayList<>(history);
+        LocalDate start = LocalDate.of(2000, 1, 1);
+        for (int i = 0; i < history; i++) {
+            records.add(new Attendance(i + 1, 1000 + i % CLASS_SIZE, 1 + i % 6,
+                    start.plusDays(i / (CLASS_SIZE * 6)), 1, AttendanceStatus.values()[i % 3], 1, false));
+        }
+        store.setLoadedData(store.getAllUsers(), store.getAllDepartments(), store.getAllCourses(),
+                store.getAllSubjects(), store.getAllSections(), store.getAllStudents(), store.getAllTeachers(),
+                records, store.getAllTeacherSubjects(), store.getAttendanceRule(),
+                new int[] { 100, 100, 100, 100, 100, 100, 100, history + 1 });
+    }
+
+    /**
+     * Average cost of one upsert over ROUNDS class markings on fresh dates
+     */
+    private static double measure(DataStore store, LocalDate date) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++)
+            markClass(store, date.plusDays(round));
+        return (double) (System.nanoTime() - start) / (ROUNDS * CLASS_SIZE * 2);
+    }
+
+    /**
+     * Insert a mark for every student, then change each of them
+     */
+    private static void markClass(DataStore store, LocalDate date) {
+        for (int s = 0; s < CLASS_SIZE; s++)
+            store.addAttendance(1000 + s, 1, date, 1, AttendanceStatus.ABSENT, 1, false);
+        for (int s = 0; s < CLASS_SIZE; s++)
+            store.addAttendance(1000 + s, 1, date, 1, AttendanceStatus.PRESENT, 1, false);
+    }
+}
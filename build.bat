@@ -18,6 +18,17 @@ if %ERRORLEVEL% neq 0 (
     exit /b 1
 )
 
+REM Benchmarks are compiled separately so they stay out of the JAR
+echo Step 1b: Compiling benchmarks...
+if not exist bench-bin mkdir bench-bin
+javac -encoding UTF-8 -d bench-bin -cp bin bench\attendance\bench\*.java
+
+if %ERRORLEVEL% neq 0 (
+    echo Benchmark compilation failed!
+    pause
+    exit /b 1
+)
+
 REM Create JAR
 echo Step 2: Creating JAR file...
 if not exist dist mkdir dist
@@ -37,4 +48,9 @@ echo.
 echo To run anywhere:
 echo   java -jar AttendanceSystem.jar
 echo.
+echo To run a benchmark or check from an empty scratch folder:
+echo   java -cp "%APP_DIR%bin;%APP_DIR%bench-bin" attendance.bench.UpsertBenchmark
+echo   java -cp "%APP_DIR%bin;%APP_DIR%bench-bin" attendance.bench.SnapshotBenchmark
+echo   java -cp "%APP_DIR%bin;%APP_DIR%bench-bin" attendance.bench.RestartCheck
+echo.
 pause
@@ -1,5 +1,6 @@
 package attendance;
 
+import attendance.database.DataPersistence;
 import attendance.database.DataStore;
 import attendance.ui.frames.LoginFrame;
 import attendance.ui.theme.ThemeColors;
@@ -37,6 +38,13 @@ public class App {
         // Initialize data store (loads sample data)
         DataStore.getInstance();
 
+        // Write out changes still waiting in the save window when the app exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            DataPersistence.flush();
+            System.out.println("[DataPersistence] Saves requested: " + DataPersistence.getSavesRequested()
+                    + ", performed: " + DataPersistence.getSavesPerformed());
+        }));
+
         // Run UI on Event Dispatch Thread
         SwingUtilities.invokeLater(() -> {
             try {
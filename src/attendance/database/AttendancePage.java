@@ -0,0 +1,44 @@
+package attendance.database;
+
+import attendance.models.Attendance;
+import java.util.List;
+
+/**
+ * One page of DataStore.recentAttendance, newest first
+ */
+public class AttendancePage {
+    private final List<Attendance> records;
+    private final Cursor nextCursor;
+
+    AttendancePage(List<Attendance> records, Cursor nextCursor) {
+        this.records = records;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Attendance> getRecords() {
+        return records;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    /**
+     * Where the next page starts, or null after the last page
+     */
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Position after the last record of a page, as (date, id) packed into the sort key
+     * Records added or changed after the page was read still sort consistently around it.
+     */
+    public static final class Cursor {
+        final long key;
+
+        Cursor(long key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package attendance.database;
+
+import attendance.models.Attendance;
+import attendance.models.AttendanceStatus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Attendance rows stored in a fixed-width segment file
+ *
+ * The file is memory-mapped and rows are decoded in place on access, so opening
+ * a segment costs the same regardless of how many rows it holds and pages are
+ * read from disk only when rows on them are touched. The store still copies every
+ * row into its table, in a deferred load after startup (see DataStore). Each
+ * snapshot writes a new segment generation; the snapshot file records which
+ * generation belongs to it.
+ */
+class AttendanceSegment extends AbstractList<Attendance> implements RandomAccess {
+    private static final int MAGIC = 0x41545347; // "ATSG"
+    private static final int VERSION = 2;
+    private static final int VERSION_BYTE_PERIOD = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // id, studentId, subjectId, epochDay, period, status, markedBy, flags
+    static final int ROW_SIZE = 4 + 4 + 4 + 4 + 4 + 1 + 4 + 1;
+    // Version 1 stored the period in one unsigned byte
+    static final int ROW_SIZE_BYTE_PERIOD = 4 + 4 + 4 + 4 + 1 + 1 + 4 + 1;
+    private static final int FLAG_LATE_ENTRY = 1;
+    private static final AttendanceStatus[] STATUSES = AttendanceStatus.values();
+
+    private final ByteBuffer rows;
+    private final int size;
+    private final int rowSize;
+    private final long generation;
+    private Map<Integer, String> editReasons = Map.of();
+
+    private AttendanceSegment(ByteBuffer rows, int size, int rowSize, long generation) {
+        this.rows = rows;
+        this.size = size;
+        this.rowSize = rowSize;
+        this.generation = generation;
+    }
+
+    /**
+     * Segment file of the given generation, next to the snapshot file
+     */
+    static Path pathFor(Path snapshotFile, long generation) {
+        String name = snapshotFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return snapshotFile.resolveSibling(base + "." + generation + ".seg");
+    }
+
+    /**
+     * Map a segment file read-only
+     */
+    static AttendanceSegment map(Path file, long expectedGeneration) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("Segment too large to map: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+                throw new IOException("Not an attendance segment: " + file);
+            int version = buffer.getInt(4);
+            if (version != VERSION && version != VERSION_BYTE_PERIOD)
+                throw new IOException("Unsupported segment version " + version);
+            int rowSize = version == VERSION ? ROW_SIZE : ROW_SIZE_BYTE_PERIOD;
+            long generation = buffer.getLong(8);
+            int size = buffer.getInt(16);
+            long rowBytes = (long) size * rowSize;
+            if (generation != expectedGeneration || buffer.getInt(20) != rowSize || size < 0
+                    || HEADER_SIZE + rowBytes > length)
+                throw new IOException("Segment does not match snapshot: " + file);
+            return new AttendanceSegment(buffer.slice(HEADER_SIZE, (int) rowBytes), size, rowSize, generation);
+        }
+    }
+
+    /**
+     * Write a table's rows to a new segment file, straight from its columns
+     */
+    static void write(Path file, AttendanceTable table, long generation) throws IOException {
+        // A segment must stay small enough to be mapped again
+        if (HEADER_SIZE + (long) table.size() * ROW_SIZE > Integer.MAX_VALUE)
+            throw new IOException("Too many attendance rows for one segment: " + table.size());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(generation).putInt(table.size()).putInt(ROW_SIZE);
+            for (int row = 0; row < table.size(); row++) {
+                if (buffer.remaining() < ROW_SIZE)
+                    drain(channel, buffer);
+                writeRow(buffer, table, row);
+            }
+            drain(channel, buffer);
+            channel.force(false);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static void writeRow(ByteBuffer out, AttendanceTable table, int row) {
+        out.putInt(table.id(row));
+        out.putInt(table.studentId(row));
+        out.putInt(table.subjectId(row));
+        out.putInt(table.epochDay(row));
+        out.putInt(table.period(row));
+        out.put((byte) table.status(row).ordinal());
+        out.putInt(table.markedBy(row));
+        out.put((byte) (table.isLateEntry(row) ? FLAG_LATE_ENTRY : 0));
+    }
+
+    /**
+     * Decode the row starting at an absolute offset without moving the buffer position
+     */
+    static Attendance readRow(ByteBuffer in, int offset) {
+        return new Attendance(in.getInt(offset), in.getInt(offset + 4), in.getInt(offset + 8),
+                LocalDate.ofEpochDay(in.getInt(offset + 12)), in.getInt(offset + 16),
+                STATUSES[in.get(offset + 20)], in.getInt(offset + 21),
+                (in.get(offset + 25) & FLAG_LATE_ENTRY) != 0);
+    }
+
+    /**
+     * Decode a version 1 row, whose period is one unsigned byte
+     */
+    static Attendance readRowBytePeriod(ByteBuffer in, int offset) {
+        return new Attendance(in.getInt(offset), in.getInt(offset + 4), in.getInt(offset + 8),
+                LocalDate.ofEpochDay(in.getInt(offset + 12)), Byte.toUnsignedInt(in.get(offset + 16)),
+                STATUSES[in.get(offset + 17)], in.getInt(offset + 18),
+                (in.get(offset + 22) & FLAG_LATE_ENTRY) != 0);
+    }
+
+    void setEditReasons(Map<Integer, String> editReasons) {
+        this.editReasons = editReasons;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    @Override
+    public Attendance get(int row) {
+        Objects.checkIndex(row, size);
+        Attendance attendance = rowSize == ROW_SIZE ? readRow(rows, row * ROW_SIZE)
+                : readRowBytePeriod(rows, row * ROW_SIZE_BYTE_PERIOD);
+        String reason = editReasons.get(row);
+        if (reason != null)
+            attendance.setEditReason(reason);
+        return attendance;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,403 @@
+package attendance.database;
+
+import attendance.models.Attendance;
+import attendance.models.AttendanceStatus;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Attendance records stored column by column in primitive arrays
+ *
+ * A record takes 16 bytes across the columns: id and student id as ints, subject,
+ * period, status and the late-entry flag packed into one int, and the date (days
+ * since 1970) and marking user as chars. The rare record whose values do not fit
+ * is flagged wide and keeps its full values in a side map. Columns grow one chunk
+ * at a time, so adding rows never copies what is already stored. Attendance
+ * objects are only created when records are handed out, and changes to them
+ * reach the table through set().
+ *
+ * With its lookups a row costs about 28-31 bytes here: 16 in the columns, 4 in
+ * the id map and 8-11 in the key table, which is kept between 2x and 2.7x the
+ * row count. DataStore's four posting lists add another 16-32, so 1M records
+ * take about 50-60 MB of heap in all.
+ *
+ * copy() shares the chunks instead of cloning them: both tables mark them shared,
+ * and a shared chunk is cloned the first time one of its rows is overwritten. Rows
+ * appended after a copy land past the copy's size, so they never need a clone.
+ */
+class AttendanceTable {
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int TOMBSTONE = -1;
+    private static final AttendanceStatus[] STATUSES = AttendanceStatus.values();
+
+    // Packed column: subject id (20 bits), period (8), status (2), late entry (1); the sign bit marks a wide row
+    private static final int SUBJECT_MASK = (1 << 20) - 1;
+    private static final int PERIOD_SHIFT = 20;
+    private static final int PERIOD_MASK = 0xFF;
+    private static final int STATUS_SHIFT = 28;
+    private static final int LATE_ENTRY = 1 << 30;
+    private static final int WIDE = 1 << 31;
+
+    private int[][] ids = new int[0][];
+    private int[][] studentIds = new int[0][];
+    private int[][] packed = new int[0][];
+    private char[][] epochDays = new char[0][];
+    private char[][] markedBy = new char[0][];
+    private Map<Integer, int[]> wideValues = new HashMap<>(); // row -> {subjectId, epochDay, period, markedBy}
+    private Map<Integer, String> editReasons = new HashMap<>();
+    private boolean[] sharedChunks = new boolean[0];
+    private int size;
+
+    // Row of each id, direct-addressed since ids are handed out sequentially (row + 1, 0 = none)
+    private int[][] rowsById = new int[0][];
+
+    // Row of each (student, subject, date, period) key, open addressing (row + 1, 0 = empty).
+    // Any length works: slots are picked by multiplying the hash into the table's range.
+    private int[] keySlots = new int[16];
+    private int keyCount;
+    private int keyTombstones;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a record as a new row and return its row number
+     */
+    int append(Attendance a) {
+        int row = size;
+        if ((row & CHUNK_MASK) == 0)
+            addChunk();
+        size++;
+        write(row, a);
+        putRowForId(a.getId(), row);
+        insertKey(row);
+        return row;
+    }
+
+    /**
+     * Overwrite a row with the fields of a record
+     */
+    void set(int row, Attendance a) {
+        Objects.checkIndex(row, size);
+        unshare(row >>> CHUNK_BITS);
+        removeKey(row);
+        int oldId = id(row);
+        write(row, a);
+        if (oldId != a.getId()) {
+            putRowForId(oldId, -1);
+            putRowForId(a.getId(), row);
+        }
+        insertKey(row);
+    }
+
+    /**
+     * Materialize a row as a detached Attendance object
+     */
+    Attendance get(int row) {
+        Objects.checkIndex(row, size);
+        Attendance a = new Attendance(id(row), studentId(row), subjectId(row), LocalDate.ofEpochDay(epochDay(row)),
+                period(row), status(row), markedBy(row), isLateEntry(row));
+        if (!editReasons.isEmpty())
+            a.setEditReason(editReasons.get(row));
+        return a;
+    }
+
+    int id(int row) {
+        return ids[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    int studentId(int row) {
+        return studentIds[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    int subjectId(int row) {
+        int p = packed(row);
+        return p < 0 ? wideValues.get(row)[0] : p & SUBJECT_MASK;
+    }
+
+    int epochDay(int row) {
+        int c = row >>> CHUNK_BITS, i = row & CHUNK_MASK;
+        return packed[c][i] < 0 ? wideValues.get(row)[1] : epochDays[c][i];
+    }
+
+    int period(int row) {
+        int p = packed(row);
+        return p < 0 ? wideValues.get(row)[2] : (p >>> PERIOD_SHIFT) & PERIOD_MASK;
+    }
+
+    AttendanceStatus status(int row) {
+        return STATUSES[(packed(row) >>> STATUS_SHIFT) & 3];
+    }
+
+    int markedBy(int row) {
+        int c = row >>> CHUNK_BITS, i = row & CHUNK_MASK;
+        return packed[c][i] < 0 ? wideValues.get(row)[3] : markedBy[c][i];
+    }
+
+    boolean isLateEntry(int row) {
+        return (packed(row) & LATE_ENTRY) != 0;
+    }
+
+    private int packed(int row) {
+        return packed[row >>> CHUNK_BITS][row & CHUNK_MASK];
+    }
+
+    /**
+     * Edit reasons by row; only the few edited rows have one
+     */
+    Map<Integer, String> editReasons() {
+        return Collections.unmodifiableMap(editReasons);
+    }
+
+    /**
+     * Row holding the given id, or -1
+     */
+    int rowOf(int id) {
+        int c = id >>> CHUNK_BITS;
+        if (id < 0 || c >= rowsById.length || rowsById[c] == null)
+            return -1;
+        return rowsById[c][id & CHUNK_MASK] - 1;
+    }
+
+    /**
+     * Row marked for a student, subject, date and period, or -1
+     */
+    int find(int studentId, int subjectId, LocalDate date, int period) {
+        int epochDay = (int) date.toEpochDay();
+        for (int slot = slot(hash(studentId, subjectId, epochDay, period));; slot = nextSlot(slot)) {
+            int entry = keySlots[slot];
+            if (entry == 0)
+                return -1;
+            int row = entry - 1;
+            if (entry != TOMBSTONE && studentId(row) == studentId && subjectId(row) == subjectId
+                    && epochDay(row) == epochDay && period(row) == period)
+                return row;
+        }
+    }
+
+    void clear() {
+        ids = new int[0][];
+        studentIds = new int[0][];
+        packed = new int[0][];
+        epochDays = new char[0][];
+        markedBy = new char[0][];
+        wideValues = new HashMap<>();
+        editReasons = new HashMap<>();
+        sharedChunks = new boolean[0];
+        rowsById = new int[0][];
+        keySlots = new int[16];
+        keyCount = 0;
+        keyTombstones = 0;
+        size = 0;
+    }
+
+    /**
+     * Copy of the columns without the lookup indexes; only row access works on it.
+     * Takes time in the number of chunks and edit reasons, not rows, since the
+     * chunks are shared until either table overwrites one.
+     */
+    AttendanceTable copy() {
+        Arrays.fill(sharedChunks, true);
+        AttendanceTable copy = new AttendanceTable();
+        copy.ids = ids.clone();
+        copy.studentIds = studentIds.clone();
+        copy.packed = packed.clone();
+        copy.epochDays = epochDays.clone();
+        copy.markedBy = markedBy.clone();
+        copy.sharedChunks = sharedChunks.clone();
+        copy.wideValues = new HashMap<>(wideValues);
+        copy.editReasons = new HashMap<>(editReasons);
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Live read-only view of the rows; each access materializes a new object
+     */
+    List<Attendance> asList() {
+        return new Rows();
+    }
+
+    private final class Rows extends AbstractList<Attendance> implements RandomAccess {
+        @Override
+        public Attendance get(int row) {
+            return AttendanceTable.this.get(row);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private void write(int row, Attendance a) {
+        int c = row >>> CHUNK_BITS, i = row & CHUNK_MASK;
+        ids[c][i] = a.getId();
+        studentIds[c][i] = a.getStudentId();
+        int subjectId = a.getSubjectId();
+        int epochDay = (int) a.getDate().toEpochDay();
+        int period = a.getPeriod();
+        int marker = a.getMarkedBy();
+        int flags = a.getStatus().ordinal() << STATUS_SHIFT | (a.isLateEntry() ? LATE_ENTRY : 0);
+        if (fits(subjectId, SUBJECT_MASK) && fits(period, PERIOD_MASK) && fits(epochDay, Character.MAX_VALUE)
+                && fits(marker, Character.MAX_VALUE)) {
+            packed[c][i] = flags | period << PERIOD_SHIFT | subjectId;
+            epochDays[c][i] = (char) epochDay;
+            markedBy[c][i] = (char) marker;
+            if (!wideValues.isEmpty())
+                wideValues.remove(row);
+        } else {
+            packed[c][i] = flags | WIDE;
+            epochDays[c][i] = 0;
+            markedBy[c][i] = 0;
+            wideValues.put(row, new int[] { subjectId, epochDay, period, marker });
+        }
+        if (a.getEditReason() != null)
+            editReasons.put(row, a.getEditReason());
+        else if (!editReasons.isEmpty())
+            editReasons.remove(row);
+    }
+
+    private static boolean fits(int value, int max) {
+        return value >= 0 && value <= max;
+    }
+
+    /**
+     * Give this table its own copy of a chunk a copy still refers to
+     */
+    private void unshare(int c) {
+        if (!sharedChunks[c])
+            return;
+        ids[c] = ids[c].clone();
+        studentIds[c] = studentIds[c].clone();
+        packed[c] = packed[c].clone();
+        epochDays[c] = epochDays[c].clone();
+        markedBy[c] = markedBy[c].clone();
+        sharedChunks[c] = false;
+    }
+
+    private void addChunk() {
+        int n = ids.length + 1;
+        ids = Arrays.copyOf(ids, n);
+        studentIds = Arrays.copyOf(studentIds, n);
+        packed = Arrays.copyOf(packed, n);
+        epochDays = Arrays.copyOf(epochDays, n);
+        markedBy = Arrays.copyOf(markedBy, n);
+        sharedChunks = Arrays.copyOf(sharedChunks, n);
+        ids[n - 1] = new int[CHUNK_SIZE];
+        studentIds[n - 1] = new int[CHUNK_SIZE];
+        packed[n - 1] = new int[CHUNK_SIZE];
+        epochDays[n - 1] = new char[CHUNK_SIZE];
+        markedBy[n - 1] = new char[CHUNK_SIZE];
+    }
+
+    private void putRowForId(int id, int row) {
+        if (id < 0)
+            throw new IllegalArgumentException("Negative attendance id " + id);
+        int c = id >>> CHUNK_BITS;
+        if (c >= rowsById.length)
+            rowsById = Arrays.copyOf(rowsById, Math.max(c + 1, rowsById.length * 2));
+        if (rowsById[c] == null)
+            rowsById[c] = new int[CHUNK_SIZE];
+        rowsById[c][id & CHUNK_MASK] = row + 1;
+    }
+
+    private void insertKey(int row) {
+        // Rebuild past 3/4 full, counting tombstones, so probes stay short
+        if ((keyCount + keyTombstones + 1) * 4L > keySlots.length * 3L) {
+            rebuildKeys();
+            return;
+        }
+        int slot = slot(hash(studentId(row), subjectId(row), epochDay(row), period(row)));
+        while (keySlots[slot] > 0)
+            slot = nextSlot(slot);
+        if (keySlots[slot] == TOMBSTONE)
+            keyTombstones--;
+        keySlots[slot] = row + 1;
+        keyCount++;
+    }
+
+    private void removeKey(int row) {
+        for (int slot = slot(hash(studentId(row), subjectId(row), epochDay(row), period(row)));
+                keySlots[slot] != 0; slot = nextSlot(slot)) {
+            if (keySlots[slot] == row + 1) {
+                keySlots[slot] = TOMBSTONE;
+                keyCount--;
+                keyTombstones++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Re-insert every row into a key table twice the row count, half full
+     */
+    private void rebuildKeys() {
+        keySlots = new int[Math.max(16, size * 2)];
+        keyCount = 0;
+        keyTombstones = 0;
+        for (int row = 0; row < size; row++) {
+            int slot = slot(hash(studentId(row), subjectId(row), epochDay(row), period(row)));
+            while (keySlots[slot] != 0)
+                slot = nextSlot(slot);
+            keySlots[slot] = row + 1;
+            keyCount++;
+        }
+    }
+
+    /**
+     * Map a hash onto the key table, whatever its length
+     */
+    private int slot(int hash) {
+        return (int) (((hash & 0xFFFFFFFFL) * keySlots.length) >>> 32);
+    }
+
+    private int nextSlot(int slot) {
+        return slot + 1 == keySlots.length ? 0 : slot + 1;
+    }
+
+    private static int hash(int studentId, int subjectId, int epochDay, int period) {
+        int h = ((studentId * 31 + subjectId) * 31 + epochDay) * 31 + period;
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Growable list of row numbers, used for the posting lists of the attendance indexes
+     */
+    static final class RowList {
+        private int[] rows = new int[4];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length)
+                rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+
+        void remove(int row) {
+            for (int i = 0; i < size; i++) {
+                if (rows[i] == row) {
+                    System.arraycopy(rows, i + 1, rows, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        int get(int i) {
+            return rows[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
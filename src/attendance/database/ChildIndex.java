@@ -0,0 +1,58 @@
+package attendance.database;
+
+import java.util.*;
+
+/**
+ * Parent id to the ids of its children (a one-to-many foreign key)
+ *
+ * Remembers the parent each child is filed under, so moving or deleting a child
+ * works even when the entity object was already changed in place.
+ */
+class ChildIndex {
+    private final Map<Integer, Set<Integer>> childrenByParent = new HashMap<>();
+    private final Map<Integer, Integer> parentByChild = new HashMap<>();
+
+    /**
+     * File a child under its current parent, moving it from the parent it had before
+     */
+    void put(int childId, int parentId) {
+        Integer oldParent = parentByChild.put(childId, parentId);
+        if (oldParent != null) {
+            if (oldParent == parentId)
+                return;
+            removeFrom(oldParent, childId);
+        }
+        childrenByParent.computeIfAbsent(parentId, k -> new TreeSet<>()).add(childId);
+    }
+
+    void remove(int childId) {
+        Integer oldParent = parentByChild.remove(childId);
+        if (oldParent != null)
+            removeFrom(oldParent, childId);
+    }
+
+    /**
+     * Child ids of a parent in ascending order
+     */
+    Set<Integer> children(int parentId) {
+        return childrenByParent.getOrDefault(parentId, Set.of());
+    }
+
+    int count(int parentId) {
+        return children(parentId).size();
+    }
+
+    void clear() {
+        childrenByParent.clear();
+        parentByChild.clear();
+    }
+
+    private void removeFrom(int parentId, int childId) {
+        Set<Integer> children = childrenByParent.get(parentId);
+        if (children != null) {
+            children.remove(childId);
+            if (children.isEmpty())
+                childrenByParent.remove(parentId);
+        }
+    }
+}
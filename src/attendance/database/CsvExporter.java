@@ -0,0 +1,278 @@
+package attendance.database;
+
+import attendance.database.AttendanceTable.RowList;
+import attendance.models.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Writes every attendance row of a snapshot as CSV (RFC 4180, UTF-8, CRLF lines)
+ *
+ * Rows are grouped by student in student order. Runs of rows are formatted into
+ * byte chunks on the common pool and written back in order through one direct
+ * buffer, so only a few chunks are held in memory at a time. Names and other text
+ * are escaped and encoded once per student and per subject.
+ */
+public class CsvExporter {
+    public static final String HEADER = "Student Name,Roll No,Section,Subject,Date,Status,Attendance %";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int CHUNK_ROWS = 32 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] MISSING = field("-");
+    private static final byte[][] STATUS_FIELDS = new byte[AttendanceStatus.values().length][];
+
+    static {
+        for (AttendanceStatus status : AttendanceStatus.values())
+            STATUS_FIELDS[status.ordinal()] = field(status.name());
+    }
+
+    private final AttendanceTable table;
+    private final Map<Integer, byte[]> subjectFields = new HashMap<>();
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ProgressListener progress;
+    private final long total;
+    private final int maxInFlight = 2 * ForkJoinPool.getCommonPoolParallelism();
+    private final ArrayDeque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+    private final ArrayDeque<Integer> inFlightRows = new ArrayDeque<>();
+    private long written;
+
+    private CsvExporter(DataSnapshot snapshot, FileChannel channel, ProgressListener progress) {
+        this.table = snapshot.attendanceTable();
+        this.channel = channel;
+        this.progress = progress;
+        this.total = snapshot.getAttendanceCount();
+        for (Subject subject : snapshot.getAllSubjects())
+            subjectFields.put(subject.getId(), field(subject.getName()));
+    }
+
+    /**
+     * Write the export to a file, replacing it; returns the number of rows written.
+     * Rows go to a temporary file beside it that is moved into place only once the
+     * export completes; a cancelled or failed export removes it and leaves the file as it was.
+     */
+    public static long exportAttendance(DataSnapshot snapshot, Path file, ProgressListener progress)
+            throws IOException {
+        Path partial = file.resolveSibling(file.getFileName() + ".part");
+        long written;
+        try {
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                written = new CsvExporter(snapshot, channel, progress).export(snapshot);
+            }
+            if (progress.isCancelled()) {
+                System.out.println("[CsvExporter] Export cancelled after " + written + " rows");
+                return written;
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        System.out.println("[CsvExporter] Exported " + written + " attendance rows to " + file);
+        return written;
+    }
+
+    private long export(DataSnapshot snapshot) throws IOException {
+        put(HEADER.getBytes(StandardCharsets.UTF_8));
+        put(CRLF);
+
+        List<Span> spans = new ArrayList<>();
+        int chunkRows = 0;
+        for (Student student : snapshot.getAllStudents()) {
+            RowList rows = snapshot.rowsOfStudent(student.getId());
+            if (rows == null)
+                continue;
+            byte[] prefix = studentPrefix(snapshot, student);
+            byte[] suffix = field(String.format("%.1f%%", snapshot.calculateStudentAttendance(student.getId())), true);
+
+            // Split a student across chunks when they alone would overflow one
+            for (int from = 0; from < rows.size();) {
+                int to = Math.min(rows.size(), from + CHUNK_ROWS - chunkRows);
+                spans.add(new Span(prefix, suffix, rows, from, to));
+                chunkRows += to - from;
+                from = to;
+                if (chunkRows == CHUNK_ROWS) {
+                    if (progress.isCancelled())
+                        return written;
+                    submit(spans, chunkRows);
+                    writeFinished(maxInFlight);
+                    spans = new ArrayList<>();
+                    chunkRows = 0;
+                }
+            }
+        }
+        if (chunkRows > 0)
+            submit(spans, chunkRows);
+        writeFinished(0);
+        if (!progress.isCancelled())
+            drain();
+        return written;
+    }
+
+    /**
+     * Start formatting a chunk on the common pool
+     */
+    private void submit(List<Span> spans, int rows) {
+        inFlight.add(CompletableFuture.supplyAsync(() -> format(spans, rows)));
+        inFlightRows.add(rows);
+    }
+
+    /**
+     * Write chunks in order, waiting for each, until at most the given number remain
+     */
+    private void writeFinished(int remaining) throws IOException {
+        while (inFlight.size() > remaining && !progress.isCancelled()) {
+            put(inFlight.poll().join());
+            written += inFlightRows.poll();
+            progress.update(written, total);
+        }
+    }
+
+    private byte[] format(List<Span> spans, int rows) {
+        Chunk out = new Chunk(rows * 64);
+        for (Span span : spans) {
+            for (int i = span.from; i < span.to; i++) {
+                int row = span.rows.get(i);
+                out.put(span.prefix);
+                out.put(subjectFields.getOrDefault(table.subjectId(row), MISSING));
+                out.putDate(table.epochDay(row));
+                out.put(STATUS_FIELDS[table.status(row).ordinal()]);
+                out.put(span.suffix);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Name, roll number and section fields, each followed by a comma
+     */
+    private static byte[] studentPrefix(DataSnapshot snapshot, Student student) {
+        Section section = snapshot.getSectionById(student.getSectionId());
+        return (escape(student.getName()) + "," + escape(student.getRollNumber()) + ","
+                + escape(section != null ? section.getName() : "-") + ",").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] field(String value) {
+        return field(value, false);
+    }
+
+    /**
+     * Escaped value followed by a comma, or by a line break when it ends the row
+     */
+    private static byte[] field(String value, boolean last) {
+        return (escape(value) + (last ? "\r\n" : ",")).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Quote a value containing a comma, quote or line break, doubling its quotes
+     */
+    static String escape(String value) {
+        if (value == null)
+            return "";
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n')
+                return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining())
+                drain();
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Rows [from, to) of one student's row list
+     */
+    private static final class Span {
+        final byte[] prefix;
+        final byte[] suffix;
+        final RowList rows;
+        final int from;
+        final int to;
+
+        Span(byte[] prefix, byte[] suffix, RowList rows, int from, int to) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Growable byte array for one formatted chunk
+     */
+    private static final class Chunk {
+        private byte[] bytes;
+        private int size;
+
+        Chunk(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void put(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        /**
+         * Date as yyyy-MM-dd followed by a comma
+         */
+        void putDate(int epochDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            int year = date.getYear();
+            if (year < 0 || year > 9999) {
+                put(field(date.toString()));
+                return;
+            }
+            ensure(11);
+            putDigits(year, 4);
+            bytes[size++] = '-';
+            putDigits(date.getMonthValue(), 2);
+            bytes[size++] = '-';
+            putDigits(date.getDayOfMonth(), 2);
+            bytes[size++] = ',';
+        }
+
+        private void putDigits(int value, int width) {
+            for (int i = width - 1; i >= 0; i--) {
+                bytes[size + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            size += width;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+
+        byte[] toByteArray() {
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package attendance.database;
+
+import attendance.models.Attendance;
+import java.time.LocalDate;
+
+/**
+ * A change made through the DataStore API
+ *
+ * Entity events carry the entity's id. Link rows have no id of their own and carry
+ * the teacher (TeacherSubject) or student (StudentSubject) they belong to; the
+ * attendance rule uses 0.
+ */
+public interface DataChangeEvent {
+    /**
+     * Model class of the data that changed
+     */
+    Class<?> type();
+
+    /**
+     * A mark was recorded, changed or moved to this student, subject and date
+     */
+    record AttendanceChanged(int studentId, int subjectId, LocalDate date) implements DataChangeEvent {
+        @Override
+        public Class<?> type() {
+            return Attendance.class;
+        }
+    }
+
+    record EntityAdded(Class<?> type, int id) implements DataChangeEvent {
+    }
+
+    record EntityUpdated(Class<?> type, int id) implements DataChangeEvent {
+    }
+
+    record EntityRemoved(Class<?> type, int id) implements DataChangeEvent {
+    }
+}
@@ -0,0 +1,14 @@
+package attendance.database;
+
+import java.util.List;
+
+/**
+ * Receives DataStore changes on the EDT
+ *
+ * Changes made close together arrive as one batch, in the order they were made,
+ * with exact repeats dropped.
+ */
+@FunctionalInterface
+public interface DataChangeListener {
+    void dataChanged(List<DataChangeEvent> events);
+}
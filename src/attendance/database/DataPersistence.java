@@ -3,48 +3,279 @@ package attendance.database;
 import attendance.models.*;
 import java.io.*;
 import java.nio.file.*;
-import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 /**
- * Handles saving and loading data to/from JSON files
- * Data is stored in 'data/' folder
+ * Handles saving and loading data to/from disk
+ * Data is stored in 'data/' folder as a snapshot, a memory-mapped attendance
+ * segment, and a write-ahead log of the changes made since the snapshot was written
  */
 public class DataPersistence {
     private static final String DATA_DIR = "data";
-    private static final String DATA_FILE = DATA_DIR + "/attendance_data.dat";
+    private static final String DATA_FILE = DATA_DIR + "/attendance_data.bin";
+    private static final String LEGACY_DATA_FILE = DATA_DIR + "/attendance_data.dat";
+    private static final String LOG_FILE = DATA_DIR + "/attendance_data.wal";
+
+    // Fold the log into a new snapshot once it grows past this size
+    private static final long COMPACT_THRESHOLD_BYTES = 4 * 1024 * 1024;
+
+    // Log records requested within this window are written together
+    private static final long SAVE_WINDOW_MILLIS = Long.getLong("attendance.saveWindowMs", 250);
+
+    private static final WriteAheadLog log = new WriteAheadLog(Paths.get(LOG_FILE));
+    private static final PersistenceScheduler scheduler = new PersistenceScheduler(SAVE_WINDOW_MILLIS,
+            log::writePending);
+    private static final AtomicBoolean compacting = new AtomicBoolean(false);
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "data-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Object captureLock = new Object();
+
+    // DataStore logs its changes after releasing its write lock. It takes a ticket while
+    // still holding the lock, and records are appended in ticket order, so the log
+    // keeps the order the changes were made in.
+    private static final Object logOrder = new Object();
+    private static long ticketsIssued; // guarded by logOrder
+    private static long ticketsLogged; // guarded by logOrder
+    private static final Object snapshotLock = new Object();
+    private static long snapshotSequence;
+    private static long writtenSequence;
+    private static long segmentGeneration;
+    private static DataStore attachedStore;
 
     /**
-     * Save all data to file
+     * Save all data to a new snapshot and clear the log
      */
     public static void saveData(DataStore store) {
         try {
+            writeSnapshot(captureSnapshot(store));
+            System.out.println("[DataPersistence] Data saved successfully to " + DATA_FILE);
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error saving data: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Append the current state of an entity to the log
+     */
+    public static void logPut(Object entity) {
+        try {
+            log.appendPut(entity);
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error writing log: " + e.getMessage());
+        }
+        scheduler.markDirty();
+        compactIfNeeded();
+    }
+
+    /**
+     * Append several entities to the log as one record
+     */
+    public static void logPutAll(List<?> entities) {
+        try {
+            log.appendPutAll(entities);
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error writing log: " + e.getMessage());
+        }
+        scheduler.markDirty();
+        compactIfNeeded();
+    }
+
+    /**
+     * Append the deletion of an entity to the log
+     */
+    public static void logDelete(Class<?> kind, int id) {
+        try {
+            log.appendDelete(kind, id);
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error writing log: " + e.getMessage());
+        }
+        scheduler.markDirty();
+        compactIfNeeded();
+    }
+
+    /**
+     * Append the removal of a teacher-subject assignment to the log
+     */
+    public static void logRemove(TeacherSubject ts) {
+        try {
+            log.appendRemove(ts);
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error writing log: " + e.getMessage());
+        }
+        scheduler.markDirty();
+        compactIfNeeded();
+    }
+
+    /**
+     * Reserve the next place in the log; call while holding the store's write lock
+     */
+    static long reserveLogTicket() {
+        synchronized (logOrder) {
+            return ++ticketsIssued;
+        }
+    }
+
+    /**
+     * Run a reserved ticket's appends once every earlier ticket has been logged.
+     * Every reserved ticket must be passed here exactly once.
+     */
+    static void logInOrder(long ticket, List<Runnable> appends) {
+        awaitLogged(ticket - 1);
+        try {
+            for (Runnable append : appends)
+                append.run();
+        } finally {
+            synchronized (logOrder) {
+                ticketsLogged = ticket;
+                logOrder.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait until the appends of every ticket up to the given one have run
+     */
+    private static void awaitLogged(long ticket) {
+        boolean interrupted = false;
+        synchronized (logOrder) {
+            while (ticketsLogged < ticket) {
+                try {
+                    logOrder.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Ask for pending log records to be written at the end of the current save window
+     */
+    public static void requestSave() {
+        scheduler.markDirty();
+    }
+
+    /**
+     * Write pending log records now and force them to the storage device
+     * Call on shutdown and logout so nothing waits in the current save window
+     */
+    public static void flush() {
+        scheduler.flush();
+        try {
+            log.sync();
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error syncing log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Number of changes that asked to be saved
+     */
+    public static long getSavesRequested() {
+        return scheduler.getSavesRequested();
+    }
+
+    /**
+     * Number of log writes actually performed after coalescing
+     */
+    public static long getSavesPerformed() {
+        return scheduler.getSavesPerformed();
+    }
+
+    /**
+     * Start a background compaction when the log has grown large.
+     * The snapshot is captured and written on the compactor thread, so the
+     * mutating thread only checks the log size.
+     */
+    private static void compactIfNeeded() {
+        DataStore store = attachedStore;
+        if (store == null || log.size() < COMPACT_THRESHOLD_BYTES)
+            return;
+        if (!compacting.compareAndSet(false, true))
+            return;
+
+        compactor.execute(() -> {
+            try {
+                writeSnapshot(captureSnapshot(store));
+                System.out.println("[DataPersistence] Log compacted into " + DATA_FILE);
+            } catch (IOException e) {
+                System.err.println("[DataPersistence] Error compacting log: " + e.getMessage());
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Copy the store's collections and start a fresh log, so that the snapshot plus
+     * the new log always describe the current state. The store's read lock keeps
+     * writers out until both are done; it is always taken before captureLock.
+     * Attendance chunks are shared with the copy rather than cloned, so the lock
+     * is held for time in the number of entities and chunks, not attendance rows.
+     * Changes made before the lock was taken may still be waiting to be logged;
+     * their records are let into the old log before it is rotated out.
+     */
+    private static Snapshot captureSnapshot(DataStore store) throws IOException {
+        Lock storeLock = store.snapshotLock();
+        storeLock.lock();
+        try {
+            long issued;
+            synchronized (logOrder) {
+                issued = ticketsIssued;
+            }
+            awaitLogged(issued);
+            synchronized (captureLock) {
+                Snapshot snapshot = new Snapshot(store, ++snapshotSequence);
+                log.rotate();
+                return snapshot;
+            }
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    /**
+     * Write a snapshot to a temporary file, swap it in atomically and drop the
+     * log records it covers. Snapshots older than the last one written are skipped.
+     */
+    private static void writeSnapshot(Snapshot snapshot) throws IOException {
+        synchronized (snapshotLock) {
+            if (snapshot.sequence < writtenSequence)
+                return;
+
             // Create data directory if not exists
             Files.createDirectories(Paths.get(DATA_DIR));
+            Path dataFile = Paths.get(DATA_FILE);
+            long generation = segmentGeneration + 1;
+            Path segment = AttendanceSegment.pathFor(dataFile, generation);
+            Path segmentTmp = Paths.get(segment + ".tmp");
+            AttendanceSegment.write(segmentTmp, snapshot.attendanceTable, generation);
+            Files.move(segmentTmp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(DATA_FILE))) {
-
-                // Save all collections
-                oos.writeObject(store.getAllUsers());
-                oos.writeObject(store.getAllDepartments());
-                oos.writeObject(store.getAllCourses());
-                oos.writeObject(store.getAllSubjects());
-                oos.writeObject(store.getAllSections());
-                oos.writeObject(store.getAllStudents());
-                oos.writeObject(store.getAllTeachers());
-                oos.writeObject(store.getAllAttendance());
-                oos.writeObject(store.getAllTeacherSubjects());
-                oos.writeObject(store.getAttendanceRule());
-
-                // Save ID counters
-                oos.writeObject(store.getNextIds());
-
-                System.out.println("[DataPersistence] Data saved successfully to " + DATA_FILE);
+            Path tmp = Paths.get(DATA_FILE + ".tmp");
+            SnapshotFormat.write(tmp, snapshot, generation);
+            Files.move(tmp, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            segmentGeneration = generation;
+            deleteSegments(segment);
+            writtenSequence = snapshot.sequence;
+            synchronized (captureLock) {
+                // A newer capture may have appended records this snapshot does not cover
+                if (snapshot.sequence == snapshotSequence)
+                    log.discardRotated();
             }
-        } catch (IOException e) {
-            System.err.println("[DataPersistence] Error saving data: " + e.getMessage());
-            e.printStackTrace();
         }
     }
 
@@ -52,16 +283,67 @@ public class DataPersistence {
      * Load data from file
      * Returns true if data was loaded, false if file doesn't exist
      */
-    @SuppressWarnings("unchecked")
     public static boolean loadData(DataStore store) {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) {
+        attachedStore = store;
+        Path dataFile = Paths.get(DATA_FILE);
+        Path legacyFile = Paths.get(LEGACY_DATA_FILE);
+        boolean migrating = !Files.exists(dataFile) && Files.exists(legacyFile);
+        if (!Files.exists(dataFile) && !migrating) {
             System.out.println("[DataPersistence] No saved data found, using defaults");
+            discardLog();
             return false;
         }
 
+        try {
+            long start = System.nanoTime();
+            Snapshot snapshot = migrating ? readLegacySnapshot(legacyFile) : SnapshotFormat.read(dataFile);
+
+            // Set data in store; rows mapped from a segment are loaded and indexed by a
+            // deferred load, which attendance operations wait for. Other attendance is
+            // in the store before the log is replayed on top of it.
+            if (snapshot.attendance instanceof AttendanceSegment segment)
+                segmentGeneration = segment.generation();
+            int replayed;
+            if (snapshot.attendance instanceof AttendanceSegment segment && !segment.isEmpty()) {
+                snapshot.withoutAttendance().applyTo(store);
+                store.deferAttendanceLoad();
+                replayed = log.replay(store);
+                store.runDeferredAttendanceLoad(segment);
+            } else {
+                snapshot.applyTo(store);
+                replayed = log.replay(store);
+            }
+
+            System.out.println("[DataPersistence] Data loaded successfully from "
+                    + (migrating ? LEGACY_DATA_FILE : DATA_FILE)
+                    + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            System.out.println("  - Users: " + snapshot.users.size());
+            System.out.println("  - Teachers: " + snapshot.teachers.size());
+            System.out.println("  - Students: " + snapshot.students.size());
+            System.out.println("  - Attendance records: " + snapshot.attendance.size()
+                    + (snapshot.attendance instanceof AttendanceSegment ? " (deferred load)" : ""));
+            System.out.println("  - Log records replayed: " + replayed);
+
+            if (migrating)
+                migrateLegacySnapshot(store, legacyFile);
+            return true;
+
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            System.err.println("[DataPersistence] Error loading data: " + e);
+            e.printStackTrace();
+            setAsideData();
+            System.out.println("[DataPersistence] Using default sample data instead");
+            return false;
+        }
+    }
+
+    /**
+     * Read a snapshot written with Java serialization by earlier versions
+     */
+    @SuppressWarnings("unchecked")
+    private static Snapshot readLegacySnapshot(Path file) throws IOException, ClassNotFoundException {
         try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(DATA_FILE))) {
+                new BufferedInputStream(Files.newInputStream(file)))) {
 
             // Load all collections
             List<User> users = (List<User>) ois.readObject();
@@ -78,21 +360,72 @@ public class DataPersistence {
             // Load ID counters
             int[] nextIds = (int[]) ois.readObject();
 
-            // Set data in store
-            store.setLoadedData(users, departments, courses, subjects, sections,
-                    students, teachers, attendance, teacherSubjects, rule, nextIds);
+            return new Snapshot(users, departments, courses, subjects, sections, students, teachers,
+                    attendance, teacherSubjects, rule, nextIds, 0);
+        }
+    }
 
-            System.out.println("[DataPersistence] Data loaded successfully from " + DATA_FILE);
-            System.out.println("  - Users: " + users.size());
-            System.out.println("  - Teachers: " + teachers.size());
-            System.out.println("  - Students: " + students.size());
-            System.out.println("  - Attendance records: " + attendance.size());
-            return true;
+    /**
+     * One-time conversion: write the loaded data in the binary format and keep the
+     * old file as a backup so it is not migrated again
+     */
+    private static void migrateLegacySnapshot(DataStore store, Path legacyFile) throws IOException {
+        writeSnapshot(captureSnapshot(store));
+        Path backup = Paths.get(LEGACY_DATA_FILE + ".bak");
+        Files.move(legacyFile, backup, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("[DataPersistence] Migrated " + LEGACY_DATA_FILE + " to " + DATA_FILE
+                + " (old file kept as " + backup + ")");
+    }
 
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("[DataPersistence] Error loading data: " + e.getMessage());
-            System.out.println("[DataPersistence] Using default sample data instead");
-            return false;
+    /**
+     * Delete segment files other than the given one. Files still mapped by this
+     * process cannot be deleted on some platforms; they are retried next time.
+     */
+    private static void deleteSegments(Path keep) {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(Paths.get(DATA_DIR), "attendance_data.*.seg")) {
+            for (Path segment : segments) {
+                if (!segment.equals(keep)) {
+                    try {
+                        Files.deleteIfExists(segment);
+                    } catch (IOException e) {
+                        System.err.println("[DataPersistence] Could not delete " + segment + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error listing segments: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keep the files of a failed load in a folder of their own: the log is moved
+     * there so none of its records are lost, the snapshot and segments are copied
+     * (a segment may still be mapped) so the sample data saved next cannot overwrite
+     * them. Startup stops if this fails.
+     */
+    private static void setAsideData() {
+        Path dir = Paths.get(DATA_DIR, "failed-load-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        try {
+            Files.createDirectories(dir);
+            log.moveTo(dir);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(DATA_DIR), "attendance_data.*")) {
+                for (Path file : files) {
+                    if (Files.isRegularFile(file))
+                        Files.copy(file, dir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Saved data could not be loaded or set aside in " + dir, e);
+        }
+        System.err.println("[DataPersistence] Saved data could not be loaded; it was set aside in " + dir);
+    }
+
+    private static void discardLog() {
+        try {
+            log.truncate();
+        } catch (IOException e) {
+            System.err.println("[DataPersistence] Error deleting log: " + e.getMessage());
         }
     }
 
@@ -102,6 +435,9 @@ public class DataPersistence {
     public static void clearData() {
         try {
             Files.deleteIfExists(Paths.get(DATA_FILE));
+            Files.deleteIfExists(Paths.get(LEGACY_DATA_FILE));
+            deleteSegments(null);
+            log.truncate();
             System.out.println("[DataPersistence] Data file deleted");
         } catch (IOException e) {
             System.err.println("[DataPersistence] Error deleting data: " + e.getMessage());
@@ -112,6 +448,6 @@ public class DataPersistence {
      * Check if saved data exists
      */
     public static boolean hasSavedData() {
-        return new File(DATA_FILE).exists();
+        return new File(DATA_FILE).exists() || new File(LEGACY_DATA_FILE).exists();
     }
 }
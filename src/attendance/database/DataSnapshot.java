@@ -0,0 +1,277 @@
+package attendance.database;
+
+import attendance.database.AttendanceTable.RowList;
+import attendance.models.*;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-only copy of the store taken at one point in time
+ *
+ * Reports and exports read a snapshot on background threads while the store keeps
+ * changing. Collections and attendance rows are copied; entity objects are shared
+ * with the store. Groupings and attendance totals are computed on first use.
+ */
+public class DataSnapshot {
+    private final List<Department> departments;
+    private final List<Course> courses;
+    private final List<Subject> subjects;
+    private final List<Section> sections;
+    private final List<Student> students;
+    private final List<Teacher> teachers;
+    private final AttendanceTable attendance;
+    private final AttendanceRule attendanceRule;
+
+    private Map<Integer, Course> courseById;
+    private Map<Integer, Subject> subjectById;
+    private Map<Integer, Section> sectionById;
+    private Map<Integer, Student> studentById;
+    private Map<Integer, List<Course>> coursesByDepartment;
+    private Map<Integer, List<Teacher>> teachersByDepartment;
+    private Map<Integer, List<Section>> sectionsByCourse;
+    private Map<Integer, List<Student>> studentsBySection;
+    private Map<Integer, RowList> rowsByStudent;
+    private Map<Integer, int[]> studentTotals; // {attended, total}
+    private Map<Integer, int[]> subjectTotals;
+    private Map<Long, int[]> studentSubjectTotals;
+
+    DataSnapshot(List<Department> departments, List<Course> courses, List<Subject> subjects,
+            List<Section> sections, List<Student> students, List<Teacher> teachers,
+            AttendanceTable attendance, AttendanceRule attendanceRule) {
+        this.departments = Collections.unmodifiableList(departments);
+        this.courses = Collections.unmodifiableList(courses);
+        this.subjects = Collections.unmodifiableList(subjects);
+        this.sections = Collections.unmodifiableList(sections);
+        this.students = Collections.unmodifiableList(students);
+        this.teachers = Collections.unmodifiableList(teachers);
+        this.attendance = attendance;
+        this.attendanceRule = attendanceRule;
+    }
+
+    // === Entities ===
+    public List<Department> getAllDepartments() {
+        return departments;
+    }
+
+    public List<Course> getAllCourses() {
+        return courses;
+    }
+
+    public List<Subject> getAllSubjects() {
+        return subjects;
+    }
+
+    public List<Section> getAllSections() {
+        return sections;
+    }
+
+    public List<Student> getAllStudents() {
+        return students;
+    }
+
+    public List<Teacher> getAllTeachers() {
+        return teachers;
+    }
+
+    public AttendanceRule getAttendanceRule() {
+        return attendanceRule;
+    }
+
+    public synchronized Course getCourseById(int id) {
+        if (courseById == null)
+            courseById = byId(courses, Course::getId);
+        return courseById.get(id);
+    }
+
+    public synchronized Subject getSubjectById(int id) {
+        if (subjectById == null)
+            subjectById = byId(subjects, Subject::getId);
+        return subjectById.get(id);
+    }
+
+    public synchronized Section getSectionById(int id) {
+        if (sectionById == null)
+            sectionById = byId(sections, Section::getId);
+        return sectionById.get(id);
+    }
+
+    public synchronized Student getStudentById(int id) {
+        if (studentById == null)
+            studentById = byId(students, Student::getId);
+        return studentById.get(id);
+    }
+
+    public synchronized List<Course> getCoursesByDepartment(int departmentId) {
+        if (coursesByDepartment == null)
+            coursesByDepartment = groupBy(courses, Course::getDepartmentId);
+        return coursesByDepartment.getOrDefault(departmentId, List.of());
+    }
+
+    public synchronized List<Teacher> getTeachersByDepartment(int departmentId) {
+        if (teachersByDepartment == null)
+            teachersByDepartment = groupBy(teachers, Teacher::getDepartmentId);
+        return teachersByDepartment.getOrDefault(departmentId, List.of());
+    }
+
+    public synchronized List<Section> getSectionsByCourse(int courseId) {
+        if (sectionsByCourse == null)
+            sectionsByCourse = groupBy(sections, Section::getCourseId);
+        return sectionsByCourse.getOrDefault(courseId, List.of());
+    }
+
+    public synchronized List<Student> getStudentsBySection(int sectionId) {
+        if (studentsBySection == null)
+            studentsBySection = groupBy(students, Student::getSectionId);
+        return studentsBySection.getOrDefault(sectionId, List.of());
+    }
+
+    // === Attendance ===
+    public int getAttendanceCount() {
+        return attendance.size();
+    }
+
+    /**
+     * Attendance row as a new object; rows are in the order they were recorded
+     */
+    public Attendance getAttendance(int row) {
+        return attendance.get(row);
+    }
+
+    /**
+     * Attendance of one student, in the order it was recorded
+     */
+    public List<Attendance> getAttendanceByStudent(int studentId) {
+        RowList rows = rowsOfStudent(studentId);
+        if (rows == null)
+            return List.of();
+        List<Attendance> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++)
+            result.add(attendance.get(rows.get(i)));
+        return result;
+    }
+
+    /**
+     * Rows of one student in recorded order, or null; grouped for all students on first use
+     */
+    synchronized RowList rowsOfStudent(int studentId) {
+        if (rowsByStudent == null) {
+            rowsByStudent = new HashMap<>();
+            for (int row = 0; row < attendance.size(); row++)
+                rowsByStudent.computeIfAbsent(attendance.studentId(row), k -> new RowList()).add(row);
+        }
+        return rowsByStudent.get(studentId);
+    }
+
+    /**
+     * Attendance columns for exporters in this package; must not be modified
+     */
+    AttendanceTable attendanceTable() {
+        return attendance;
+    }
+
+    public double getOverallAttendancePercentage() {
+        int attended = 0;
+        int total = 0;
+        for (int[] counts : totals(true).values()) {
+            attended += counts[0];
+            total += counts[1];
+        }
+        return total == 0 ? 0 : (attended * 100.0) / total;
+    }
+
+    public double calculateStudentAttendance(int studentId) {
+        return percentage(totals(true).get(studentId));
+    }
+
+    public double calculateSubjectAttendance(int subjectId) {
+        return percentage(totals(false).get(subjectId));
+    }
+
+    /**
+     * Marks recorded for a subject as {attended (present or late), total}
+     */
+    public int[] getSubjectAttendanceCounts(int subjectId) {
+        int[] counts = totals(false).get(subjectId);
+        return counts != null ? counts.clone() : new int[2];
+    }
+
+    /**
+     * Attendance counts of every student in the snapshot that has marks
+     */
+    public List<AttendanceCount> getStudentCounts() {
+        Map<Integer, int[]> totals = totals(true);
+        List<AttendanceCount> counts = new ArrayList<>();
+        for (Student student : students) {
+            int[] t = totals.get(student.getId());
+            if (t != null)
+                counts.add(new AttendanceCount(student.getId(), 0, t[0], t[1]));
+        }
+        return counts;
+    }
+
+    /**
+     * Attendance counts of every student in every subject they have marks in, skipping
+     * students and subjects no longer in the snapshot
+     */
+    public List<AttendanceCount> getStudentSubjectCounts() {
+        totals(true);
+        List<AttendanceCount> counts = new ArrayList<>();
+        for (Map.Entry<Long, int[]> entry : studentSubjectTotals.entrySet()) {
+            int studentId = (int) (entry.getKey() >> 32);
+            int subjectId = (int) (long) entry.getKey();
+            int[] t = entry.getValue();
+            if (getStudentById(studentId) != null && getSubjectById(subjectId) != null)
+                counts.add(new AttendanceCount(studentId, subjectId, t[0], t[1]));
+        }
+        return counts;
+    }
+
+    /**
+     * Count attended and total marks per student, per subject and per student and
+     * subject in one pass over the rows
+     */
+    private synchronized Map<Integer, int[]> totals(boolean byStudent) {
+        if (studentTotals == null) {
+            Map<Integer, int[]> perStudent = new HashMap<>();
+            Map<Integer, int[]> perSubject = new HashMap<>();
+            Map<Long, int[]> perPair = new HashMap<>();
+            for (int row = 0; row < attendance.size(); row++) {
+                int attended = attendance.status(row) == AttendanceStatus.ABSENT ? 0 : 1;
+                int studentId = attendance.studentId(row);
+                int subjectId = attendance.subjectId(row);
+                int[] s = perStudent.computeIfAbsent(studentId, k -> new int[2]);
+                s[0] += attended;
+                s[1]++;
+                int[] j = perSubject.computeIfAbsent(subjectId, k -> new int[2]);
+                j[0] += attended;
+                j[1]++;
+                int[] p = perPair.computeIfAbsent(((long) studentId << 32) | (subjectId & 0xFFFFFFFFL),
+                        k -> new int[2]);
+                p[0] += attended;
+                p[1]++;
+            }
+            studentTotals = perStudent;
+            subjectTotals = perSubject;
+            studentSubjectTotals = perPair;
+        }
+        return byStudent ? studentTotals : subjectTotals;
+    }
+
+    private static double percentage(int[] counts) {
+        return counts == null || counts[1] == 0 ? 0 : (counts[0] * 100.0) / counts[1];
+    }
+
+    private static <T> Map<Integer, T> byId(List<T> items, ToIntFunction<T> id) {
+        Map<Integer, T> map = new HashMap<>();
+        for (T item : items)
+            map.put(id.applyAsInt(item), item);
+        return map;
+    }
+
+    private static <T> Map<Integer, List<T>> groupBy(List<T> items, ToIntFunction<T> parentId) {
+        Map<Integer, List<T>> map = new HashMap<>();
+        for (T item : items)
+            map.computeIfAbsent(parentId.applyAsInt(item), k -> new ArrayList<>()).add(item);
+        return map;
+    }
+}
@@ -1,8 +1,17 @@
 package attendance.database;
 
+import attendance.database.AttendanceTable.RowList;
+import attendance.database.DataChangeEvent.*;
 import attendance.models.*;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
 
 /**
  * In-memory data store with file persistence
@@ -19,11 +28,37 @@ public class DataStore {
     private Map<Integer, Section> sections = new HashMap<>();
     private Map<Integer, Student> students = new HashMap<>();
     private Map<Integer, Teacher> teachers = new HashMap<>();
-    private List<Attendance> attendanceRecords = new ArrayList<>();
+    private AttendanceTable attendanceTable = new AttendanceTable();
     private List<TeacherSubject> teacherSubjects = new ArrayList<>();
     private List<StudentSubject> studentSubjects = new ArrayList<>();
     private AttendanceRule attendanceRule = new AttendanceRule();
 
+    // Unique lookup keys (kept in sync on add/update/delete)
+    private UniqueIndex<String> usernameIndex = new UniqueIndex<>();
+    private UniqueIndex<Integer> studentUserIndex = new UniqueIndex<>();
+    private UniqueIndex<String> rollNumberIndex = new UniqueIndex<>();
+    private UniqueIndex<Integer> teacherUserIndex = new UniqueIndex<>();
+
+    // Parent to children foreign-key indexes (kept in sync on add/update/delete)
+    private ChildIndex coursesByDepartment = new ChildIndex();
+    private ChildIndex subjectsByCourse = new ChildIndex();
+    private ChildIndex sectionsByCourse = new ChildIndex();
+    private ChildIndex studentsBySection = new ChildIndex();
+    private ChildIndex teachersByDepartment = new ChildIndex();
+    private Map<Integer, List<TeacherSubject>> teacherSubjectsByTeacher = new HashMap<>();
+
+    // Attendance posting lists of table rows (rebuilt on load, kept in sync on add/update);
+    // lookups by id and by (student, subject, date, period) are indexed by the table itself
+    private Map<Integer, RowList> attendanceByStudent = new HashMap<>();
+    private Map<Integer, RowList> attendanceBySubject = new HashMap<>();
+    private Map<Long, RowList> attendanceByStudentSubject = new HashMap<>();
+    private NavigableMap<LocalDate, RowList> attendanceByDate = new TreeMap<>();
+
+    // Running attendance counters (rebuilt on load, kept in sync on add/update)
+    private AttendanceTally overallTally = new AttendanceTally();
+    private Map<Integer, AttendanceTally> studentTallies = new HashMap<>();
+    private Map<Long, AttendanceTally> studentSubjectTallies = new HashMap<>();
+
     // ID counters
     private int nextUserId = 1;
     private int nextDepartmentId = 1;
@@ -34,20 +69,50 @@ public class DataStore {
     private int nextTeacherId = 1;
     private int nextAttendanceId = 1;
 
+    // Guards every collection and counter in the store. Readers share the read lock and
+    // get copies back, so work on other threads never sees a collection mid-update.
+    // Attendance methods wait for a deferred attendance load before taking the lock.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Deferred load: attendance mapped from a segment file is copied into the table and
+    // indexed on a loader thread after startup. This moves the O(rows) work off the
+    // startup path rather than removing it; attendance operations block until it is
+    // done, everything else is available immediately. A load that fails is run again
+    // by the next attendance operation.
+    private volatile CompletableFuture<Void> attendanceReady = CompletableFuture.completedFuture(null);
+    private List<Attendance> deferredAttendance;
+    private List<Attendance> deferredRows; // kept until the deferred load succeeds
+    private final Object deferredLoadRetry = new Object();
+
+    // Changes made through the API are collected while the write lock is held, queued
+    // when it is released and delivered to listeners in one batch per EDT turn;
+    // replay and loading publish nothing
+    private final List<DataChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<DataChangeEvent> writeEvents = new ArrayList<>(); // guarded by the write lock
+    private final Set<DataChangeEvent> pendingEvents = new LinkedHashSet<>();
+    private boolean deliveryScheduled; // guarded by pendingEvents
+
+    // Log records are collected the same way and appended once the outermost write has
+    // released the lock, so readers never wait on the log
+    private final List<Runnable> writeLogs = new ArrayList<>(); // guarded by the write lock
+
     // Current logged-in user
-    private User currentUser;
+    private volatile User currentUser;
 
     private DataStore() {
         // Try to load saved data first
         boolean loaded = DataPersistence.loadData(this);
         if (!loaded) {
-            // No saved data, initialize with sample data
+            // No saved data, or it could not be read and was set aside: start over
+            // from an empty store with sample data
+            resetData();
             initializeSampleData();
-            saveData(); // Save the sample data
-        } else if (attendanceRecords.isEmpty() && !students.isEmpty()) {
+            DataPersistence.saveData(this); // Save the sample data
+        } else if (attendanceReady.isDone() && !attendanceReady.isCompletedExceptionally()
+                && attendanceTable.size() == 0 && !students.isEmpty()) {
             // Data exists but no attendance records - generate sample attendance
             generateSampleAttendanceForExistingStudents();
-            saveData();
+            DataPersistence.saveData(this);
         }
     }
 
@@ -60,17 +125,20 @@ public class DataStore {
 
     /**
      * Save current data to disk
+     * The write happens in the background at the end of the current save window;
+     * use DataPersistence.flush() to wait for it
      */
     public void saveData() {
-        DataPersistence.saveData(this);
+        DataPersistence.requestSave();
     }
 
     /**
      * Get ID counters for persistence
      */
     public int[] getNextIds() {
-        return new int[] { nextUserId, nextDepartmentId, nextCourseId, nextSubjectId,
-                nextSectionId, nextStudentId, nextTeacherId, nextAttendanceId };
+        awaitAttendanceLoad();
+        return readLocked(() -> new int[] { nextUserId, nextDepartmentId, nextCourseId, nextSubjectId,
+                nextSectionId, nextStudentId, nextTeacherId, nextAttendanceId });
     }
 
     /**
@@ -81,48 +149,64 @@ public class DataStore {
             List<Student> studentList, List<Teacher> teacherList,
             List<Attendance> attendanceList, List<TeacherSubject> teacherSubjectList,
             AttendanceRule rule, int[] nextIds) {
-
-        // Clear existing data
-        users.clear();
-        departments.clear();
-        courses.clear();
-        subjects.clear();
-        sections.clear();
-        students.clear();
-        teachers.clear();
-        attendanceRecords.clear();
-        teacherSubjects.clear();
-
-        // Load collections into maps
-        for (User u : userList)
-            users.put(u.getId(), u);
-        for (Department d : deptList)
-            departments.put(d.getId(), d);
-        for (Course c : courseList)
-            courses.put(c.getId(), c);
-        for (Subject s : subjectList)
-            subjects.put(s.getId(), s);
-        for (Section s : sectionList)
-            sections.put(s.getId(), s);
-        for (Student s : studentList)
-            students.put(s.getId(), s);
-        for (Teacher t : teacherList)
-            teachers.put(t.getId(), t);
-
-        attendanceRecords.addAll(attendanceList);
-        teacherSubjects.addAll(teacherSubjectList);
-        attendanceRule = rule != null ? rule : new AttendanceRule();
-
-        // Restore ID counters
-        if (nextIds != null && nextIds.length == 8) {
-            nextUserId = nextIds[0];
-            nextDepartmentId = nextIds[1];
-            nextCourseId = nextIds[2];
-            nextSubjectId = nextIds[3];
-            nextSectionId = nextIds[4];
-            nextStudentId = nextIds[5];
-            nextTeacherId = nextIds[6];
-            nextAttendanceId = nextIds[7];
+        awaitAttendanceLoad();
+
+        lock.writeLock().lock();
+        try {
+            // Clear existing data
+            users.clear();
+            departments.clear();
+            courses.clear();
+            subjects.clear();
+            sections.clear();
+            students.clear();
+            teachers.clear();
+            teacherSubjects.clear();
+            usernameIndex.clear();
+            studentUserIndex.clear();
+            rollNumberIndex.clear();
+            teacherUserIndex.clear();
+            coursesByDepartment.clear();
+            subjectsByCourse.clear();
+            sectionsByCourse.clear();
+            studentsBySection.clear();
+            teachersByDepartment.clear();
+            teacherSubjectsByTeacher.clear();
+
+            // Load collections into maps
+            for (User u : userList)
+                putUser(u);
+            for (Department d : deptList)
+                departments.put(d.getId(), d);
+            for (Course c : courseList)
+                putCourse(c);
+            for (Subject s : subjectList)
+                putSubject(s);
+            for (Section s : sectionList)
+                putSection(s);
+            for (Student s : studentList)
+                putStudent(s);
+            for (Teacher t : teacherList)
+                putTeacher(t);
+
+            loadAttendance(attendanceList);
+            for (TeacherSubject ts : teacherSubjectList)
+                putTeacherSubject(ts);
+            attendanceRule = rule != null ? rule : new AttendanceRule();
+
+            // Restore ID counters
+            if (nextIds != null && nextIds.length == 8) {
+                nextUserId = nextIds[0];
+                nextDepartmentId = nextIds[1];
+                nextCourseId = nextIds[2];
+                nextSubjectId = nextIds[3];
+                nextSectionId = nextIds[4];
+                nextStudentId = nextIds[5];
+                nextTeacherId = nextIds[6];
+                nextAttendanceId = nextIds[7];
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
@@ -274,7 +358,7 @@ public class DataStore {
                     Attendance attendance = new Attendance(
                             nextAttendanceId++, student.getId(), subject.getId(),
                             date, period, status, markedBy, false);
-                    attendanceRecords.add(attendance);
+                    appendAttendance(attendance);
                 }
             }
         }
@@ -283,383 +367,1188 @@ public class DataStore {
     }
 
     // === User operations ===
+    /**
+     * Throws IllegalArgumentException when the username is taken
+     */
     public User addUser(String username, String password, Role role, String email) {
-        User user = new User(nextUserId++, username, password, role, email);
-        users.put(user.getId(), user);
-        saveData();
-        return user;
+        return writeLocked(() -> {
+            requireUnique(usernameIndex, username, nextUserId, "Username");
+            User user = new User(nextUserId++, username, password, role, email);
+            putUser(user);
+            logPut(user);
+            publish(new EntityAdded(User.class, user.getId()));
+            return user;
+        });
     }
 
     public User getUserByUsername(String username) {
-        return users.values().stream()
-                .filter(u -> u.getUsername().equals(username))
-                .findFirst()
-                .orElse(null);
+        return readLocked(() -> lookup(users, usernameIndex.get(username)));
     }
 
     public User getUserById(int id) {
-        return users.get(id);
+        return readLocked(() -> users.get(id));
     }
 
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        return readLocked(() -> new ArrayList<>(users.values()));
     }
 
     public List<User> getUsersByRole(Role role) {
-        return users.values().stream()
+        return readLocked(() -> users.values().stream()
                 .filter(u -> u.getRole() == role)
-                .toList();
+                .toList());
     }
 
     public void updateUser(User user) {
-        users.put(user.getId(), user);
-        saveData();
+        writeLocked(() -> {
+            requireUnique(usernameIndex, user.getUsername(), user.getId(), "Username");
+            putUser(user);
+            logPut(user);
+            publish(new EntityUpdated(User.class, user.getId()));
+        });
     }
 
     public void deleteUser(int id) {
-        users.remove(id);
-        saveData();
+        writeLocked(() -> {
+            removeUser(id);
+            logDelete(User.class, id);
+            publish(new EntityRemoved(User.class, id));
+        });
     }
 
     // === Department operations ===
     public Department addDepartment(String name, String code, String description) {
-        Department dept = new Department(nextDepartmentId++, name, code, description);
-        departments.put(dept.getId(), dept);
-        saveData();
-        return dept;
+        return writeLocked(() -> {
+            Department dept = new Department(nextDepartmentId++, name, code, description);
+            departments.put(dept.getId(), dept);
+            logPut(dept);
+            publish(new EntityAdded(Department.class, dept.getId()));
+            return dept;
+        });
     }
 
     public Department getDepartmentById(int id) {
-        return departments.get(id);
+        return readLocked(() -> departments.get(id));
     }
 
     public List<Department> getAllDepartments() {
-        return new ArrayList<>(departments.values());
+        return readLocked(() -> new ArrayList<>(departments.values()));
     }
 
     public void updateDepartment(Department dept) {
-        departments.put(dept.getId(), dept);
-        saveData();
+        writeLocked(() -> {
+            departments.put(dept.getId(), dept);
+            logPut(dept);
+            publish(new EntityUpdated(Department.class, dept.getId()));
+        });
     }
 
     public void deleteDepartment(int id) {
-        departments.remove(id);
-        saveData();
+        writeLocked(() -> {
+            departments.remove(id);
+            logDelete(Department.class, id);
+            publish(new EntityRemoved(Department.class, id));
+        });
     }
 
     // === Course operations ===
     public Course addCourse(int departmentId, String name, String code, int durationYears) {
-        Course course = new Course(nextCourseId++, departmentId, name, code, durationYears);
-        courses.put(course.getId(), course);
-        saveData();
-        return course;
+        return writeLocked(() -> {
+            Course course = new Course(nextCourseId++, departmentId, name, code, durationYears);
+            putCourse(course);
+            logPut(course);
+            publish(new EntityAdded(Course.class, course.getId()));
+            return course;
+        });
     }
 
     public Course getCourseById(int id) {
-        return courses.get(id);
+        return readLocked(() -> courses.get(id));
     }
 
     public List<Course> getAllCourses() {
-        return new ArrayList<>(courses.values());
+        return readLocked(() -> new ArrayList<>(courses.values()));
     }
 
     public List<Course> getCoursesByDepartment(int departmentId) {
-        return courses.values().stream()
-                .filter(c -> c.getDepartmentId() == departmentId)
-                .toList();
+        return readLocked(() -> children(courses, coursesByDepartment, departmentId));
     }
 
     public void updateCourse(Course course) {
-        courses.put(course.getId(), course);
-        saveData();
+        writeLocked(() -> {
+            putCourse(course);
+            logPut(course);
+            publish(new EntityUpdated(Course.class, course.getId()));
+        });
     }
 
     public void deleteCourse(int id) {
-        courses.remove(id);
-        saveData();
+        writeLocked(() -> {
+            removeCourse(id);
+            logDelete(Course.class, id);
+            publish(new EntityRemoved(Course.class, id));
+        });
     }
 
     // === Subject operations ===
     public Subject addSubject(int courseId, String name, String code, int semester, int credits) {
-        Subject subject = new Subject(nextSubjectId++, courseId, name, code, semester, credits);
-        subjects.put(subject.getId(), subject);
-        saveData();
-        return subject;
+        return writeLocked(() -> {
+            Subject subject = new Subject(nextSubjectId++, courseId, name, code, semester, credits);
+            putSubject(subject);
+            logPut(subject);
+            publish(new EntityAdded(Subject.class, subject.getId()));
+            return subject;
+        });
     }
 
     public Subject getSubjectById(int id) {
-        return subjects.get(id);
+        return readLocked(() -> subjects.get(id));
     }
 
     public List<Subject> getAllSubjects() {
-        return new ArrayList<>(subjects.values());
+        return readLocked(() -> new ArrayList<>(subjects.values()));
     }
 
     public List<Subject> getSubjectsByCourse(int courseId) {
-        return subjects.values().stream()
-                .filter(s -> s.getCourseId() == courseId)
-                .toList();
+        return readLocked(() -> children(subjects, subjectsByCourse, courseId));
     }
 
     public void updateSubject(Subject subject) {
-        subjects.put(subject.getId(), subject);
-        saveData();
+        writeLocked(() -> {
+            putSubject(subject);
+            logPut(subject);
+            publish(new EntityUpdated(Subject.class, subject.getId()));
+        });
     }
 
     public void deleteSubject(int id) {
-        subjects.remove(id);
-        saveData();
+        writeLocked(() -> {
+            removeSubject(id);
+            logDelete(Subject.class, id);
+            publish(new EntityRemoved(Subject.class, id));
+        });
     }
 
     // === Section operations ===
     public Section addSection(int courseId, String name, String academicYear, int semester) {
-        Section section = new Section(nextSectionId++, courseId, name, academicYear, semester);
-        sections.put(section.getId(), section);
-        saveData();
-        return section;
+        return writeLocked(() -> {
+            Section section = new Section(nextSectionId++, courseId, name, academicYear, semester);
+            putSection(section);
+            logPut(section);
+            publish(new EntityAdded(Section.class, section.getId()));
+            return section;
+        });
     }
 
     public Section getSectionById(int id) {
-        return sections.get(id);
+        return readLocked(() -> sections.get(id));
     }
 
     public List<Section> getAllSections() {
-        return new ArrayList<>(sections.values());
+        return readLocked(() -> new ArrayList<>(sections.values()));
     }
 
     public List<Section> getSectionsByCourse(int courseId) {
-        return sections.values().stream()
-                .filter(s -> s.getCourseId() == courseId)
-                .toList();
+        return readLocked(() -> children(sections, sectionsByCourse, courseId));
     }
 
     public void updateSection(Section section) {
-        sections.put(section.getId(), section);
-        saveData();
+        writeLocked(() -> {
+            putSection(section);
+            logPut(section);
+            publish(new EntityUpdated(Section.class, section.getId()));
+        });
     }
 
     public void deleteSection(int id) {
-        sections.remove(id);
-        saveData();
+        writeLocked(() -> {
+            removeSection(id);
+            logDelete(Section.class, id);
+            publish(new EntityRemoved(Section.class, id));
+        });
     }
 
     // === Student operations ===
+    /**
+     * Throws IllegalArgumentException when the user already has a student record
+     * or the roll number is taken
+     */
     public Student addStudent(int userId, int sectionId, String rollNumber, String name) {
-        Student student = new Student(nextStudentId++, userId, sectionId, rollNumber, name);
-        students.put(student.getId(), student);
-        saveData();
-        return student;
+        return writeLocked(() -> {
+            requireUnique(studentUserIndex, userId, nextStudentId, "Student user");
+            requireUnique(rollNumberIndex, rollNumber, nextStudentId, "Roll number");
+            Student student = new Student(nextStudentId++, userId, sectionId, rollNumber, name);
+            putStudent(student);
+            logPut(student);
+            publish(new EntityAdded(Student.class, student.getId()));
+            return student;
+        });
     }
 
     public Student getStudentById(int id) {
-        return students.get(id);
+        return readLocked(() -> students.get(id));
     }
 
     public Student getStudentByUserId(int userId) {
-        return students.values().stream()
-                .filter(s -> s.getUserId() == userId)
-                .findFirst()
-                .orElse(null);
+        return readLocked(() -> lookup(students, studentUserIndex.get(userId)));
     }
 
     public List<Student> getAllStudents() {
-        return new ArrayList<>(students.values());
+        return readLocked(() -> new ArrayList<>(students.values()));
     }
 
     public List<Student> getStudentsBySection(int sectionId) {
-        return students.values().stream()
-                .filter(s -> s.getSectionId() == sectionId)
-                .toList();
+        return readLocked(() -> children(students, studentsBySection, sectionId));
+    }
+
+    public int countStudentsBySection(int sectionId) {
+        return readLocked(() -> studentsBySection.count(sectionId));
     }
 
     public Student getStudentByRollNumber(String rollNumber) {
-        return students.values().stream()
-                .filter(s -> s.getRollNumber().equals(rollNumber))
-                .findFirst()
-                .orElse(null);
+        return readLocked(() -> lookup(students, rollNumberIndex.get(rollNumber)));
     }
 
     public void updateStudent(Student student) {
-        students.put(student.getId(), student);
-        saveData();
+        writeLocked(() -> {
+            requireUnique(studentUserIndex, student.getUserId(), student.getId(), "Student user");
+            requireUnique(rollNumberIndex, student.getRollNumber(), student.getId(), "Roll number");
+            putStudent(student);
+            logPut(student);
+            publish(new EntityUpdated(Student.class, student.getId()));
+        });
     }
 
     public void deleteStudent(int id) {
-        students.remove(id);
-        saveData();
+        writeLocked(() -> {
+            removeStudent(id);
+            logDelete(Student.class, id);
+            publish(new EntityRemoved(Student.class, id));
+        });
     }
 
     // === Teacher operations ===
+    /**
+     * Throws IllegalArgumentException when the user already has a teacher record
+     */
     public Teacher addTeacher(int userId, String name, int departmentId) {
-        Teacher teacher = new Teacher(nextTeacherId++, userId, name, departmentId);
-        teachers.put(teacher.getId(), teacher);
-        saveData();
-        return teacher;
+        return writeLocked(() -> {
+            requireUnique(teacherUserIndex, userId, nextTeacherId, "Teacher user");
+            Teacher teacher = new Teacher(nextTeacherId++, userId, name, departmentId);
+            putTeacher(teacher);
+            logPut(teacher);
+            publish(new EntityAdded(Teacher.class, teacher.getId()));
+            return teacher;
+        });
     }
 
     public Teacher getTeacherById(int id) {
-        return teachers.get(id);
+        return readLocked(() -> teachers.get(id));
     }
 
     public Teacher getTeacherByUserId(int userId) {
-        return teachers.values().stream()
-                .filter(t -> t.getUserId() == userId)
-                .findFirst()
-                .orElse(null);
+        return readLocked(() -> lookup(teachers, teacherUserIndex.get(userId)));
     }
 
     public List<Teacher> getAllTeachers() {
-        return new ArrayList<>(teachers.values());
+        return readLocked(() -> new ArrayList<>(teachers.values()));
     }
 
     public List<Teacher> getTeachersByDepartment(int departmentId) {
-        return teachers.values().stream()
-                .filter(t -> t.getDepartmentId() == departmentId)
-                .toList();
+        return readLocked(() -> children(teachers, teachersByDepartment, departmentId));
     }
 
     public void updateTeacher(Teacher teacher) {
-        teachers.put(teacher.getId(), teacher);
-        saveData();
+        writeLocked(() -> {
+            requireUnique(teacherUserIndex, teacher.getUserId(), teacher.getId(), "Teacher user");
+            putTeacher(teacher);
+            logPut(teacher);
+            publish(new EntityUpdated(Teacher.class, teacher.getId()));
+        });
     }
 
     public void deleteTeacher(int id) {
-        teachers.remove(id);
-        saveData();
+        writeLocked(() -> {
+            removeTeacher(id);
+            logDelete(Teacher.class, id);
+            publish(new EntityRemoved(Teacher.class, id));
+        });
     }
 
     // === Teacher-Subject operations ===
     public void addTeacherSubject(int teacherId, int subjectId, int sectionId) {
-        teacherSubjects.add(new TeacherSubject(teacherId, subjectId, sectionId));
-        saveData();
+        writeLocked(() -> {
+            TeacherSubject ts = new TeacherSubject(teacherId, subjectId, sectionId);
+            putTeacherSubject(ts);
+            logPut(ts);
+            publish(new EntityAdded(TeacherSubject.class, teacherId));
+        });
     }
 
     public List<TeacherSubject> getTeacherSubjects(int teacherId) {
-        return teacherSubjects.stream()
-                .filter(ts -> ts.getTeacherId() == teacherId)
-                .toList();
+        return readLocked(() -> List.copyOf(teacherSubjectsByTeacher.getOrDefault(teacherId, List.of())));
     }
 
     public List<TeacherSubject> getAllTeacherSubjects() {
-        return new ArrayList<>(teacherSubjects);
+        return readLocked(() -> new ArrayList<>(teacherSubjects));
     }
 
     public void removeTeacherSubject(int teacherId, int subjectId, int sectionId) {
-        teacherSubjects.removeIf(ts -> ts.getTeacherId() == teacherId &&
-                ts.getSubjectId() == subjectId &&
-                ts.getSectionId() == sectionId);
-        saveData();
+        writeLocked(() -> {
+            removeTeacherSubjectEntry(teacherId, subjectId, sectionId);
+            logRemove(new TeacherSubject(teacherId, subjectId, sectionId));
+            publish(new EntityRemoved(TeacherSubject.class, teacherId));
+        });
     }
 
     // === Student-Subject operations ===
     public void addStudentSubject(int studentId, int subjectId) {
-        // Check if already exists
-        boolean exists = studentSubjects.stream()
-                .anyMatch(ss -> ss.getStudentId() == studentId && ss.getSubjectId() == subjectId);
-        if (!exists) {
-            studentSubjects.add(new StudentSubject(studentId, subjectId));
-            saveData();
-        }
+        writeLocked(() -> {
+            // Check if already exists
+            boolean exists = studentSubjects.stream()
+                    .anyMatch(ss -> ss.getStudentId() == studentId && ss.getSubjectId() == subjectId);
+            if (!exists) {
+                studentSubjects.add(new StudentSubject(studentId, subjectId));
+                saveData();
+                publish(new EntityAdded(StudentSubject.class, studentId));
+            }
+        });
     }
 
     public List<StudentSubject> getAllStudentSubjects() {
-        return new ArrayList<>(studentSubjects);
+        return readLocked(() -> new ArrayList<>(studentSubjects));
     }
 
     public List<StudentSubject> getStudentSubjectsByStudent(int studentId) {
-        return studentSubjects.stream()
+        return readLocked(() -> studentSubjects.stream()
                 .filter(ss -> ss.getStudentId() == studentId)
-                .toList();
+                .toList());
     }
 
     public void removeStudentSubject(int studentId, int subjectId) {
-        studentSubjects.removeIf(ss -> ss.getStudentId() == studentId && ss.getSubjectId() == subjectId);
-        saveData();
+        writeLocked(() -> {
+            studentSubjects.removeIf(ss -> ss.getStudentId() == studentId && ss.getSubjectId() == subjectId);
+            saveData();
+            publish(new EntityRemoved(StudentSubject.class, studentId));
+        });
+    }
+
+    // === Secondary indexes ===
+
+    /**
+     * Reject a change that would give a unique key to a second entity
+     */
+    private static <K> void requireUnique(UniqueIndex<K> index, K key, int id, String what) {
+        if (!index.isAvailable(key, id))
+            throw new IllegalArgumentException(what + " already exists: " + key);
+    }
+
+    /**
+     * Index a loaded or replayed entity; data saved before keys were enforced may hold
+     * duplicates, and the entity indexed first keeps the key
+     */
+    private static <K> void indexUnique(UniqueIndex<K> index, K key, int id, String what) {
+        if (!index.put(id, key))
+            System.out.println("[DataStore] Duplicate " + what + " '" + key + "' on id " + id + " not indexed");
+    }
+
+    private void putUser(User user) {
+        users.put(user.getId(), user);
+        indexUnique(usernameIndex, user.getUsername(), user.getId(), "username");
+    }
+
+    private void removeUser(int id) {
+        users.remove(id);
+        usernameIndex.remove(id);
+    }
+
+    private void putCourse(Course course) {
+        courses.put(course.getId(), course);
+        coursesByDepartment.put(course.getId(), course.getDepartmentId());
+    }
+
+    private void removeCourse(int id) {
+        courses.remove(id);
+        coursesByDepartment.remove(id);
+    }
+
+    private void putSubject(Subject subject) {
+        subjects.put(subject.getId(), subject);
+        subjectsByCourse.put(subject.getId(), subject.getCourseId());
+    }
+
+    private void removeSubject(int id) {
+        subjects.remove(id);
+        subjectsByCourse.remove(id);
+    }
+
+    private void putSection(Section section) {
+        sections.put(section.getId(), section);
+        sectionsByCourse.put(section.getId(), section.getCourseId());
+    }
+
+    private void removeSection(int id) {
+        sections.remove(id);
+        sectionsByCourse.remove(id);
+    }
+
+    private void putStudent(Student student) {
+        students.put(student.getId(), student);
+        indexUnique(studentUserIndex, student.getUserId(), student.getId(), "student user");
+        indexUnique(rollNumberIndex, student.getRollNumber(), student.getId(), "roll number");
+        studentsBySection.put(student.getId(), student.getSectionId());
+    }
+
+    private void removeStudent(int id) {
+        students.remove(id);
+        studentUserIndex.remove(id);
+        rollNumberIndex.remove(id);
+        studentsBySection.remove(id);
+    }
+
+    private void putTeacher(Teacher teacher) {
+        teachers.put(teacher.getId(), teacher);
+        indexUnique(teacherUserIndex, teacher.getUserId(), teacher.getId(), "teacher user");
+        teachersByDepartment.put(teacher.getId(), teacher.getDepartmentId());
+    }
+
+    private void removeTeacher(int id) {
+        teachers.remove(id);
+        teacherUserIndex.remove(id);
+        teachersByDepartment.remove(id);
+    }
+
+    private void putTeacherSubject(TeacherSubject ts) {
+        teacherSubjects.add(ts);
+        teacherSubjectsByTeacher.computeIfAbsent(ts.getTeacherId(), k -> new ArrayList<>()).add(ts);
+    }
+
+    private void removeTeacherSubjectEntry(int teacherId, int subjectId, int sectionId) {
+        teacherSubjects.removeIf(ts -> ts.getTeacherId() == teacherId &&
+                ts.getSubjectId() == subjectId &&
+                ts.getSectionId() == sectionId);
+        List<TeacherSubject> assignments = teacherSubjectsByTeacher.get(teacherId);
+        if (assignments != null) {
+            assignments.removeIf(ts -> ts.getSubjectId() == subjectId && ts.getSectionId() == sectionId);
+            if (assignments.isEmpty())
+                teacherSubjectsByTeacher.remove(teacherId);
+        }
+    }
+
+    private static <T> T lookup(Map<Integer, T> map, Integer id) {
+        return id != null ? map.get(id) : null;
+    }
+
+    /**
+     * Entities filed under a parent in a child index, in id order
+     */
+    private static <T> List<T> children(Map<Integer, T> map, ChildIndex index, int parentId) {
+        List<T> result = new ArrayList<>();
+        for (int id : index.children(parentId)) {
+            T child = map.get(id);
+            if (child != null)
+                result.add(child);
+        }
+        return Collections.unmodifiableList(result);
     }
 
     // === Attendance operations ===
     public Attendance addAttendance(int studentId, int subjectId, LocalDate date, int period,
             AttendanceStatus status, int markedBy, boolean lateEntry) {
-        // Check for duplicate
-        boolean exists = attendanceRecords.stream()
-                .anyMatch(a -> a.getStudentId() == studentId &&
-                        a.getSubjectId() == subjectId &&
-                        a.getDate().equals(date) &&
-                        a.getPeriod() == period);
+        awaitAttendanceLoad();
+        return writeLocked(() -> {
+            List<Attendance> changed = new ArrayList<>(1);
+            AttendanceEntry.Result result = upsertAttendance(studentId, subjectId, date, period, status, markedBy,
+                    lateEntry, changed);
+            logPut(changed.get(0));
+            // Updates of an existing record return null
+            return result == AttendanceEntry.Result.INSERTED ? changed.get(0) : null;
+        });
+    }
 
-        if (exists) {
+    /**
+     * Mark several records at once, typically a whole class for one period
+     * Entries are applied together under the write lock and logged as one record.
+     * Returns whether each entry inserted a new record or updated an existing one.
+     */
+    public List<AttendanceEntry.Result> addAttendanceBatch(List<AttendanceEntry> entries) {
+        for (AttendanceEntry e : entries) {
+            if (e.getDate() == null || e.getStatus() == null)
+                throw new IllegalArgumentException("Attendance entry needs a date and a status");
+        }
+        awaitAttendanceLoad();
+        return writeLocked(() -> {
+            List<AttendanceEntry.Result> results = new ArrayList<>(entries.size());
+            List<Attendance> changed = new ArrayList<>(entries.size());
+            for (AttendanceEntry e : entries) {
+                results.add(upsertAttendance(e.getStudentId(), e.getSubjectId(), e.getDate(), e.getPeriod(),
+                        e.getStatus(), e.getMarkedBy(), e.isLateEntry(), changed));
+            }
+            if (!changed.isEmpty())
+                logPutAll(changed);
+            return results;
+        });
+    }
+
+    /**
+     * Insert a mark or update the one already recorded for the same student, subject,
+     * date and period. The resulting record is added to changed.
+     */
+    private AttendanceEntry.Result upsertAttendance(int studentId, int subjectId, LocalDate date, int period,
+            AttendanceStatus status, int markedBy, boolean lateEntry, List<Attendance> changed) {
+        // Check for duplicate
+        int row = attendanceTable.find(studentId, subjectId, date, period);
+        if (row >= 0) {
             // Update existing record instead
-            attendanceRecords.stream()
-                    .filter(a -> a.getStudentId() == studentId &&
-                            a.getSubjectId() == subjectId &&
-                            a.getDate().equals(date) &&
-                            a.getPeriod() == period)
-                    .findFirst()
-                    .ifPresent(a -> {
-                        a.setStatus(status);
-                        a.setMarkedBy(markedBy);
-                        a.setLateEntry(lateEntry);
-                    });
-            return null;
+            Attendance existing = attendanceTable.get(row);
+            existing.setStatus(status);
+            existing.setMarkedBy(markedBy);
+            existing.setLateEntry(lateEntry);
+            replaceAttendance(row, existing);
+            changed.add(existing);
+            publish(new AttendanceChanged(studentId, subjectId, date));
+            return AttendanceEntry.Result.UPDATED;
         }
 
-        Attendance attendance = new Attendance(nextAttendanceId++, studentId, subjectId, date, period, status, markedBy,
-                lateEntry);
-        attendanceRecords.add(attendance);
-        return attendance;
+        Attendance attendance = new Attendance(nextAttendanceId++, studentId, subjectId, date, period, status,
+                markedBy, lateEntry);
+        appendAttendance(attendance);
+        changed.add(attendance);
+        publish(new AttendanceChanged(studentId, subjectId, date));
+        return AttendanceEntry.Result.INSERTED;
     }
 
     public List<Attendance> getAttendanceByStudent(int studentId) {
-        return attendanceRecords.stream()
-                .filter(a -> a.getStudentId() == studentId)
-                .toList();
+        awaitAttendanceLoad();
+        return readLocked(() -> materialize(attendanceByStudent.get(studentId)));
     }
 
     public List<Attendance> getAttendanceBySubject(int subjectId) {
-        return attendanceRecords.stream()
-                .filter(a -> a.getSubjectId() == subjectId)
-                .toList();
+        awaitAttendanceLoad();
+        return readLocked(() -> materialize(attendanceBySubject.get(subjectId)));
     }
 
     public List<Attendance> getAttendanceByStudentAndSubject(int studentId, int subjectId) {
-        return attendanceRecords.stream()
-                .filter(a -> a.getStudentId() == studentId && a.getSubjectId() == subjectId)
-                .toList();
+        awaitAttendanceLoad();
+        return readLocked(() -> materialize(attendanceByStudentSubject.get(pairKey(studentId, subjectId))));
     }
 
     public List<Attendance> getAttendanceByDate(LocalDate date) {
-        return attendanceRecords.stream()
-                .filter(a -> a.getDate().equals(date))
-                .toList();
+        awaitAttendanceLoad();
+        return readLocked(() -> materialize(attendanceByDate.get(date)));
     }
 
     public List<Attendance> getAttendanceByDateRange(LocalDate startDate, LocalDate endDate) {
-        return attendanceRecords.stream()
-                .filter(a -> !a.getDate().isBefore(startDate) && !a.getDate().isAfter(endDate))
-                .toList();
+        awaitAttendanceLoad();
+        if (startDate.isAfter(endDate))
+            return List.of();
+
+        return readLocked(() -> {
+            List<Attendance> result = new ArrayList<>();
+            for (RowList day : attendanceByDate.subMap(startDate, true, endDate, true).values()) {
+                for (int i = 0; i < day.size(); i++)
+                    result.add(attendanceTable.get(day.get(i)));
+            }
+            return Collections.unmodifiableList(result);
+        });
+    }
+
+    public Attendance getAttendanceById(int id) {
+        awaitAttendanceLoad();
+        return readLocked(() -> {
+            int row = attendanceTable.rowOf(id);
+            return row >= 0 ? attendanceTable.get(row) : null;
+        });
+    }
+
+    public AttendancePage recentAttendance(AttendanceFilter filter, int k) {
+        return recentAttendance(filter, k, null);
+    }
+
+    /**
+     * Up to k marks matching the filter, newest date first (newest record first within a
+     * day), continuing after the cursor of a previous page. Queries for a student or
+     * subject keep the k newest of its posting list in a bounded heap; other queries walk
+     * the date index backwards and stop after k. Neither sorts the whole history.
+     */
+    public AttendancePage recentAttendance(AttendanceFilter filter, int k, AttendancePage.Cursor after) {
+        if (k <= 0)
+            throw new IllegalArgumentException("Page size must be positive");
+        awaitAttendanceLoad();
+        long afterKey = after != null ? after.key : Long.MAX_VALUE;
+
+        return readLocked(() -> {
+            // One extra row tells whether another page follows
+            long[] keys;
+            if (filter.getStudentId() != 0 || filter.getSubjectId() != 0)
+                keys = newestInPostingList(filter, k + 1, afterKey);
+            else
+                keys = newestByDate(filter, k + 1, afterKey);
+
+            int count = Math.min(k, keys.length);
+            Attendance[] records = new Attendance[count];
+            for (int i = 0; i < count; i++)
+                records[i] = attendanceTable.get(attendanceTable.rowOf((int) keys[i]));
+            AttendancePage.Cursor next = keys.length > k ? new AttendancePage.Cursor(keys[count - 1]) : null;
+            return new AttendancePage(List.of(records), next);
+        });
+    }
+
+    /**
+     * Keys of the newest matching rows of the filter's student and/or subject, newest first
+     */
+    private long[] newestInPostingList(AttendanceFilter filter, int limit, long afterKey) {
+        RowList rows;
+        if (filter.getStudentId() != 0 && filter.getSubjectId() != 0)
+            rows = attendanceByStudentSubject.get(pairKey(filter.getStudentId(), filter.getSubjectId()));
+        else if (filter.getStudentId() != 0)
+            rows = attendanceByStudent.get(filter.getStudentId());
+        else
+            rows = attendanceBySubject.get(filter.getSubjectId());
+        if (rows == null)
+            return new long[0];
+
+        // Min-heap of the newest keys seen so far
+        PriorityQueue<Long> newest = new PriorityQueue<>(limit + 1);
+        for (int i = 0; i < rows.size(); i++) {
+            int row = rows.get(i);
+            long key = recencyKey(row);
+            if (key >= afterKey || !matches(row, filter))
+                continue;
+            if (newest.size() < limit) {
+                newest.add(key);
+            } else if (key > newest.peek()) {
+                newest.poll();
+                newest.add(key);
+            }
+        }
+
+        long[] keys = new long[newest.size()];
+        for (int i = keys.length - 1; i >= 0; i--)
+            keys[i] = newest.poll();
+        return keys;
+    }
+
+    /**
+     * Keys of the newest matching rows, read day by day from the end of the date range
+     */
+    private long[] newestByDate(AttendanceFilter filter, int limit, long afterKey) {
+        NavigableMap<LocalDate, RowList> days = attendanceByDate;
+        if (filter.getToDate() != null)
+            days = days.headMap(filter.getToDate(), true);
+        if (filter.getFromDate() != null)
+            days = days.tailMap(filter.getFromDate(), true);
+        if (afterKey != Long.MAX_VALUE)
+            days = days.headMap(LocalDate.ofEpochDay(afterKey >> 32), true);
+
+        long[] keys = new long[limit];
+        int count = 0;
+        for (RowList day : days.descendingMap().values()) {
+            long[] dayKeys = new long[day.size()];
+            int n = 0;
+            for (int i = 0; i < day.size(); i++) {
+                long key = recencyKey(day.get(i));
+                if (key < afterKey)
+                    dayKeys[n++] = key;
+            }
+            Arrays.sort(dayKeys, 0, n);
+            for (int i = n - 1; i >= 0 && count < limit; i--)
+                keys[count++] = dayKeys[i];
+            if (count == limit)
+                break;
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    /**
+     * Sort key of a row: date in the high half, id in the low half, so larger is newer
+     */
+    private long recencyKey(int row) {
+        return ((long) attendanceTable.epochDay(row) << 32) | attendanceTable.id(row);
+    }
+
+    private boolean matches(int row, AttendanceFilter filter) {
+        if (filter.getStudentId() != 0 && attendanceTable.studentId(row) != filter.getStudentId())
+            return false;
+        if (filter.getSubjectId() != 0 && attendanceTable.subjectId(row) != filter.getSubjectId())
+            return false;
+        int day = attendanceTable.epochDay(row);
+        if (filter.getFromDate() != null && day < filter.getFromDate().toEpochDay())
+            return false;
+        return filter.getToDate() == null || day <= filter.getToDate().toEpochDay();
     }
 
     public List<Attendance> getAllAttendance() {
-        return new ArrayList<>(attendanceRecords);
+        awaitAttendanceLoad();
+        return readLocked(() -> new ArrayList<>(attendanceTable.asList()));
+    }
+
+    /**
+     * Consistent read-only copy of the store for reports and exports running off the EDT
+     */
+    public DataSnapshot snapshot() {
+        awaitAttendanceLoad();
+        return readLocked(() -> new DataSnapshot(new ArrayList<>(departments.values()),
+                new ArrayList<>(courses.values()), new ArrayList<>(subjects.values()),
+                new ArrayList<>(sections.values()), new ArrayList<>(students.values()),
+                new ArrayList<>(teachers.values()), attendanceTable.copy(), attendanceRule));
     }
 
+    /**
+     * Save changes made to a record returned by one of the getters
+     */
     public void updateAttendance(Attendance attendance) {
-        for (int i = 0; i < attendanceRecords.size(); i++) {
-            if (attendanceRecords.get(i).getId() == attendance.getId()) {
-                attendanceRecords.set(i, attendance);
-                break;
+        awaitAttendanceLoad();
+        writeLocked(() -> {
+            int row = attendanceTable.rowOf(attendance.getId());
+            if (row >= 0) {
+                // A record moved to another student, subject or date changes both places
+                publish(new AttendanceChanged(attendanceTable.studentId(row), attendanceTable.subjectId(row),
+                        LocalDate.ofEpochDay(attendanceTable.epochDay(row))));
+                replaceAttendance(row, attendance);
+                logPut(attendance);
+                publish(new AttendanceChanged(attendance.getStudentId(), attendance.getSubjectId(),
+                        attendance.getDate()));
             }
+        });
+    }
+
+    /**
+     * Point-in-time copy of the attendance table, for writing snapshots
+     */
+    AttendanceTable copyAttendanceTable() {
+        awaitAttendanceLoad();
+        return readLocked(() -> attendanceTable.copy());
+    }
+
+    /**
+     * Records handed out are detached copies, so build them from index rows on demand
+     */
+    private List<Attendance> materialize(RowList rows) {
+        if (rows == null)
+            return List.of();
+        Attendance[] records = new Attendance[rows.size()];
+        for (int i = 0; i < records.length; i++)
+            records[i] = attendanceTable.get(rows.get(i));
+        return List.of(records);
+    }
+
+    /**
+     * Overwrite the row of a record and move it within the indexes
+     */
+    private void replaceAttendance(int row, Attendance attendance) {
+        int oldStudentId = attendanceTable.studentId(row);
+        int oldSubjectId = attendanceTable.subjectId(row);
+        LocalDate oldDate = LocalDate.ofEpochDay(attendanceTable.epochDay(row));
+        countAttendance(oldStudentId, oldSubjectId, attendanceTable.status(row), -1);
+
+        attendanceTable.set(row, attendance);
+
+        int studentId = attendance.getStudentId();
+        int subjectId = attendance.getSubjectId();
+        reindex(attendanceByStudent, oldStudentId, studentId, row);
+        reindex(attendanceBySubject, oldSubjectId, subjectId, row);
+        reindex(attendanceByStudentSubject, pairKey(oldStudentId, oldSubjectId), pairKey(studentId, subjectId), row);
+        reindex(attendanceByDate, oldDate, attendance.getDate(), row);
+        countAttendance(studentId, subjectId, attendance.getStatus(), 1);
+    }
+
+    /**
+     * Append a new record to the attendance table and index it
+     */
+    private void appendAttendance(Attendance attendance) {
+        int row = attendanceTable.append(attendance);
+        attendanceByStudent.computeIfAbsent(attendance.getStudentId(), k -> new RowList()).add(row);
+        attendanceBySubject.computeIfAbsent(attendance.getSubjectId(), k -> new RowList()).add(row);
+        attendanceByStudentSubject.computeIfAbsent(pairKey(attendance.getStudentId(), attendance.getSubjectId()),
+                k -> new RowList()).add(row);
+        attendanceByDate.computeIfAbsent(attendance.getDate(), k -> new RowList()).add(row);
+
+        countAttendance(attendance.getStudentId(), attendance.getSubjectId(), attendance.getStatus(), 1);
+    }
+
+    /**
+     * Replace all attendance with the given records and rebuild the indexes
+     */
+    private void loadAttendance(List<Attendance> records) {
+        attendanceTable.clear();
+        attendanceByStudent.clear();
+        attendanceBySubject.clear();
+        attendanceByStudentSubject.clear();
+        attendanceByDate.clear();
+        overallTally = new AttendanceTally();
+        studentTallies.clear();
+        studentSubjectTallies.clear();
+        for (Attendance a : records) {
+            appendAttendance(a);
+        }
+    }
+
+    /**
+     * Move a row between posting lists when its key changed
+     */
+    private static <K> void reindex(Map<K, RowList> index, K oldKey, K newKey, int row) {
+        if (oldKey.equals(newKey))
+            return;
+        RowList oldList = index.get(oldKey);
+        if (oldList != null) {
+            oldList.remove(row);
+            if (oldList.isEmpty())
+                index.remove(oldKey);
         }
-        saveData();
+        index.computeIfAbsent(newKey, k -> new RowList()).add(row);
+    }
+
+    /**
+     * Add (delta = 1) or remove (delta = -1) one mark from the running counters
+     */
+    private void countAttendance(int studentId, int subjectId, AttendanceStatus status, int delta) {
+        overallTally.add(status, delta);
+        studentTallies.computeIfAbsent(studentId, k -> new AttendanceTally()).add(status, delta);
+        studentSubjectTallies.computeIfAbsent(pairKey(studentId, subjectId), k -> new AttendanceTally())
+                .add(status, delta);
+    }
+
+    private static long pairKey(int studentId, int subjectId) {
+        return ((long) studentId << 32) | (subjectId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Present/late/absent counts for a group of attendance records
+     */
+    private static final class AttendanceTally {
+        private int present;
+        private int late;
+        private int absent;
+
+        void add(AttendanceStatus status, int delta) {
+            switch (status) {
+                case PRESENT -> present += delta;
+                case LATE -> late += delta;
+                case ABSENT -> absent += delta;
+            }
+        }
+
+        int attended() {
+            return present + late;
+        }
+
+        int total() {
+            return present + late + absent;
+        }
+
+        double percentage() {
+            int total = total();
+            return total == 0 ? 0 : (attended() * 100.0) / total;
+        }
+    }
+
+    // === Deferred attendance load ===
+
+    /**
+     * Start a deferred load: hold attendance replayed from the log until the mapped
+     * rows have been copied and indexed
+     */
+    void deferAttendanceLoad() {
+        deferredAttendance = new ArrayList<>();
+        attendanceReady = new CompletableFuture<>();
+    }
+
+    /**
+     * Finish a deferred load on a loader thread: copy every mapped row into the
+     * table, build the attendance indexes, then apply the log records held back
+     * during replay. Must follow deferAttendanceLoad.
+     */
+    void runDeferredAttendanceLoad(List<Attendance> rows) {
+        if (deferredAttendance == null)
+            throw new IllegalStateException("No deferred attendance load was started");
+        deferredRows = rows;
+        // Attendance state belongs to this thread until attendanceReady completes, so it
+        // runs without the lock; readers holding it may be waiting on attendanceReady
+        CompletableFuture<Void> ready = attendanceReady;
+        Thread loader = new Thread(() -> finishDeferredLoad(ready), "attendance-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Load the deferred rows and the log records held back for them, then complete
+     * ready. A failure keeps both, so the next attendance call can try again.
+     */
+    private void finishDeferredLoad(CompletableFuture<Void> ready) {
+        long start = System.nanoTime();
+        List<Attendance> replayed = deferredAttendance;
+        try {
+            loadAttendance(deferredRows);
+            deferredAttendance = null;
+            for (Attendance a : replayed)
+                applyPut(a);
+        } catch (RuntimeException e) {
+            deferredAttendance = replayed;
+            System.err.println("[DataStore] Deferred attendance load failed; attendance operations will retry it");
+            e.printStackTrace();
+            ready.completeExceptionally(e);
+            return;
+        }
+        deferredRows = null;
+        System.out.println("[DataStore] Deferred load indexed " + attendanceTable.size() + " attendance records in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        ready.complete(null);
+    }
+
+    /**
+     * Run a failed deferred load again on the calling thread; callers that arrive
+     * meanwhile wait for this attempt instead of starting their own
+     */
+    private void retryDeferredLoad(CompletableFuture<Void> failed) {
+        CompletableFuture<Void> retry;
+        synchronized (deferredLoadRetry) {
+            if (attendanceReady != failed) {
+                retry = attendanceReady;
+            } else {
+                retry = new CompletableFuture<>();
+                attendanceReady = retry;
+                finishDeferredLoad(retry);
+            }
+        }
+        try {
+            retry.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Attendance could not be loaded", e.getCause());
+        }
+    }
+
+    /**
+     * Drop everything a failed load left in the store, including a deferred load it
+     * started, so the store can start over empty
+     */
+    private void resetData() {
+        deferredAttendance = null;
+        deferredRows = null;
+        attendanceReady = CompletableFuture.completedFuture(null);
+        setLoadedData(List.of(), List.of(), List.of(), List.of(), List.of(), List.of(), List.of(), List.of(),
+                List.of(), null, new int[] { 1, 1, 1, 1, 1, 1, 1, 1 });
+    }
+
+    // === Locking ===
+    private <T> T readLocked(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T writeLocked(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            queueWriteEvents();
+            Runnable logs = takeWriteLogs();
+            lock.writeLock().unlock();
+            if (logs != null)
+                logs.run();
+        }
+    }
+
+    private void writeLocked(Runnable action) {
+        writeLocked(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    // === Logging (collected under the write lock, appended after it) ===
+    private void logPut(Object entity) {
+        writeLogs.add(() -> DataPersistence.logPut(entity));
+    }
+
+    private void logPutAll(List<?> entities) {
+        writeLogs.add(() -> DataPersistence.logPutAll(entities));
+    }
+
+    private void logDelete(Class<?> kind, int id) {
+        writeLogs.add(() -> DataPersistence.logDelete(kind, id));
+    }
+
+    private void logRemove(TeacherSubject ts) {
+        writeLogs.add(() -> DataPersistence.logRemove(ts));
+    }
+
+    /**
+     * Take the log records of the outermost write, reserving their place in the log
+     * before the lock is released; returns the appends to run after it, or null
+     */
+    private Runnable takeWriteLogs() {
+        if (writeLogs.isEmpty() || lock.writeLock().getHoldCount() > 1)
+            return null;
+        long ticket = DataPersistence.reserveLogTicket();
+        List<Runnable> appends = List.copyOf(writeLogs);
+        writeLogs.clear();
+        return () -> DataPersistence.logInOrder(ticket, appends);
+    }
+
+    /**
+     * Read lock held while a snapshot is captured, so it sees one consistent state
+     */
+    Lock snapshotLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * Wait until a deferred attendance load has finished
+     */
+    private void awaitAttendanceLoad() {
+        CompletableFuture<Void> ready = attendanceReady;
+        if (ready.isDone() && !ready.isCompletedExceptionally())
+            return;
+        try {
+            ready.join();
+        } catch (CompletionException e) {
+            retryDeferredLoad(ready);
+        }
+    }
+
+    // === Log replay (applied on load without being logged again) ===
+    void replayPut(Object entity) {
+        writeLocked(() -> applyPut(entity));
+    }
+
+    void replayDelete(Class<?> kind, int id) {
+        writeLocked(() -> applyDelete(kind, id));
+    }
+
+    void replayRemove(TeacherSubject removed) {
+        writeLocked(() -> applyRemove(removed));
+    }
+
+    private void applyPut(Object entity) {
+        if (entity instanceof User u) {
+            putUser(u);
+            nextUserId = Math.max(nextUserId, u.getId() + 1);
+        } else if (entity instanceof Department d) {
+            departments.put(d.getId(), d);
+            nextDepartmentId = Math.max(nextDepartmentId, d.getId() + 1);
+        } else if (entity instanceof Course c) {
+            putCourse(c);
+            nextCourseId = Math.max(nextCourseId, c.getId() + 1);
+        } else if (entity instanceof Subject s) {
+            putSubject(s);
+            nextSubjectId = Math.max(nextSubjectId, s.getId() + 1);
+        } else if (entity instanceof Section s) {
+            putSection(s);
+            nextSectionId = Math.max(nextSectionId, s.getId() + 1);
+        } else if (entity instanceof Student s) {
+            putStudent(s);
+            nextStudentId = Math.max(nextStudentId, s.getId() + 1);
+        } else if (entity instanceof Teacher t) {
+            putTeacher(t);
+            nextTeacherId = Math.max(nextTeacherId, t.getId() + 1);
+        } else if (entity instanceof Attendance a && deferredAttendance != null) {
+            deferredAttendance.add(a);
+            nextAttendanceId = Math.max(nextAttendanceId, a.getId() + 1);
+        } else if (entity instanceof Attendance a) {
+            int row = attendanceTable.rowOf(a.getId());
+            if (row >= 0) {
+                replaceAttendance(row, a);
+            } else {
+                appendAttendance(a);
+            }
+            nextAttendanceId = Math.max(nextAttendanceId, a.getId() + 1);
+        } else if (entity instanceof TeacherSubject ts) {
+            // Skip assignments already covered by the snapshot
+            applyRemove(ts);
+            putTeacherSubject(ts);
+        } else if (entity instanceof AttendanceRule rule) {
+            attendanceRule = rule;
+        }
+    }
+
+    private void applyDelete(Class<?> kind, int id) {
+        if (kind == User.class) {
+            removeUser(id);
+        } else if (kind == Department.class) {
+            departments.remove(id);
+        } else if (kind == Course.class) {
+            removeCourse(id);
+        } else if (kind == Subject.class) {
+            removeSubject(id);
+        } else if (kind == Section.class) {
+            removeSection(id);
+        } else if (kind == Student.class) {
+            removeStudent(id);
+        } else if (kind == Teacher.class) {
+            removeTeacher(id);
+        }
+    }
+
+    private void applyRemove(TeacherSubject removed) {
+        removeTeacherSubjectEntry(removed.getTeacherId(), removed.getSubjectId(), removed.getSectionId());
     }
 
     // === Attendance Rules ===
     public AttendanceRule getAttendanceRule() {
-        return attendanceRule;
+        return readLocked(() -> attendanceRule);
     }
 
     public void setAttendanceRule(AttendanceRule rule) {
-        this.attendanceRule = rule;
+        writeLocked(() -> {
+            this.attendanceRule = rule;
+            logPut(rule);
+            publish(new EntityUpdated(AttendanceRule.class, 0));
+        });
+    }
+
+    // === Change events ===
+    public void addChangeListener(DataChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(DataChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Record an event for listeners; must be called under the write lock
+     */
+    private void publish(DataChangeEvent event) {
+        if (!changeListeners.isEmpty())
+            writeEvents.add(event);
+    }
+
+    /**
+     * Hand the events of the outermost write over for delivery, so one call's changes
+     * always reach listeners together
+     */
+    private void queueWriteEvents() {
+        if (writeEvents.isEmpty() || lock.writeLock().getHoldCount() > 1)
+            return;
+        synchronized (pendingEvents) {
+            pendingEvents.addAll(writeEvents);
+            if (!deliveryScheduled) {
+                deliveryScheduled = true;
+                SwingUtilities.invokeLater(this::deliverEvents);
+            }
+        }
+        writeEvents.clear();
+    }
+
+    private void deliverEvents() {
+        List<DataChangeEvent> batch;
+        synchronized (pendingEvents) {
+            batch = List.copyOf(pendingEvents);
+            pendingEvents.clear();
+            deliveryScheduled = false;
+        }
+        for (DataChangeListener listener : changeListeners) {
+            try {
+                listener.dataChanged(batch);
+            } catch (RuntimeException e) {
+                System.out.println("[DataStore] Change listener failed: " + e);
+            }
+        }
     }
 
     // === Session management ===
@@ -673,67 +1562,74 @@ public class DataStore {
 
     public void logout() {
         this.currentUser = null;
+        DataPersistence.flush();
     }
 
     // === Statistics ===
     public int getTotalStudents() {
-        return students.size();
+        return readLocked(() -> students.size());
     }
 
     public int getTotalTeachers() {
-        return teachers.size();
+        return readLocked(() -> teachers.size());
     }
 
     public int getTotalDepartments() {
-        return departments.size();
+        return readLocked(() -> departments.size());
     }
 
     public double getOverallAttendancePercentage() {
-        if (attendanceRecords.isEmpty())
-            return 0;
-
-        long presentCount = attendanceRecords.stream()
-                .filter(a -> a.getStatus() == AttendanceStatus.PRESENT || a.getStatus() == AttendanceStatus.LATE)
-                .count();
-
-        return (presentCount * 100.0) / attendanceRecords.size();
+        awaitAttendanceLoad();
+        return readLocked(() -> overallTally.percentage());
     }
 
-    public int getStudentsBelowThreshold() {
-        double threshold = attendanceRule.getMinPercentage();
-        int count = 0;
-
-        for (Student student : students.values()) {
-            double percentage = calculateStudentAttendance(student.getId());
-            if (percentage < threshold && percentage > 0) {
-                count++;
+    /**
+     * Attendance counts of every current student, read from the running counters
+     */
+    public List<AttendanceCount> getStudentCounts() {
+        awaitAttendanceLoad();
+        return readLocked(() -> {
+            List<AttendanceCount> counts = new ArrayList<>(studentTallies.size());
+            for (Map.Entry<Integer, AttendanceTally> entry : studentTallies.entrySet()) {
+                AttendanceTally tally = entry.getValue();
+                if (students.containsKey(entry.getKey()) && tally.total() > 0)
+                    counts.add(new AttendanceCount(entry.getKey(), 0, tally.attended(), tally.total()));
             }
-        }
+            return counts;
+        });
+    }
 
-        return count;
+    /**
+     * Attendance counts of every current student in every current subject they have marks in
+     */
+    public List<AttendanceCount> getStudentSubjectCounts() {
+        awaitAttendanceLoad();
+        return readLocked(() -> {
+            List<AttendanceCount> counts = new ArrayList<>(studentSubjectTallies.size());
+            for (Map.Entry<Long, AttendanceTally> entry : studentSubjectTallies.entrySet()) {
+                int studentId = (int) (entry.getKey() >> 32);
+                int subjectId = (int) (long) entry.getKey();
+                AttendanceTally tally = entry.getValue();
+                if (students.containsKey(studentId) && subjects.containsKey(subjectId) && tally.total() > 0)
+                    counts.add(new AttendanceCount(studentId, subjectId, tally.attended(), tally.total()));
+            }
+            return counts;
+        });
     }
 
     public double calculateStudentAttendance(int studentId) {
-        List<Attendance> studentRecords = getAttendanceByStudent(studentId);
-        if (studentRecords.isEmpty())
-            return 0;
-
-        long presentCount = studentRecords.stream()
-                .filter(a -> a.getStatus() == AttendanceStatus.PRESENT || a.getStatus() == AttendanceStatus.LATE)
-                .count();
-
-        return (presentCount * 100.0) / studentRecords.size();
+        awaitAttendanceLoad();
+        return readLocked(() -> {
+            AttendanceTally tally = studentTallies.get(studentId);
+            return tally != null ? tally.percentage() : 0.0;
+        });
     }
 
     public double calculateStudentSubjectAttendance(int studentId, int subjectId) {
-        List<Attendance> records = getAttendanceByStudentAndSubject(studentId, subjectId);
-        if (records.isEmpty())
-            return 0;
-
-        long presentCount = records.stream()
-                .filter(a -> a.getStatus() == AttendanceStatus.PRESENT || a.getStatus() == AttendanceStatus.LATE)
-                .count();
-
-        return (presentCount * 100.0) / records.size();
+        awaitAttendanceLoad();
+        return readLocked(() -> {
+            AttendanceTally tally = studentSubjectTallies.get(pairKey(studentId, subjectId));
+            return tally != null ? tally.percentage() : 0.0;
+        });
     }
 }
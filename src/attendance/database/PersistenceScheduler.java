@@ -0,0 +1,89 @@
+package attendance.database;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces save requests into one write per time window
+ * Writes run on a dedicated background thread so callers (usually the Swing
+ * EDT) never wait for disk I/O unless they ask for it with flush().
+ */
+class PersistenceScheduler {
+    /**
+     * The write performed once per window; returns false when there was nothing to write
+     */
+    interface Writer {
+        boolean write() throws Exception;
+    }
+
+    private final long windowMillis;
+    private final Writer writer;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong savesRequested = new AtomicLong();
+    private final AtomicLong savesPerformed = new AtomicLong();
+    private boolean scheduled;
+
+    PersistenceScheduler(long windowMillis, Writer writer) {
+        this.windowMillis = windowMillis;
+        this.writer = writer;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "data-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Record that there is data to save; the write happens when the current window closes
+     */
+    void markDirty() {
+        savesRequested.incrementAndGet();
+        synchronized (this) {
+            if (scheduled)
+                return;
+            scheduled = true;
+        }
+        executor.schedule(this::runScheduled, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write everything pending now and wait for it to finish
+     */
+    void flush() {
+        if (Thread.currentThread().getName().equals("data-writer")) {
+            write();
+            return;
+        }
+        try {
+            executor.submit(this::write).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            System.err.println("[PersistenceScheduler] Flush failed: " + e.getMessage());
+        }
+    }
+
+    private void runScheduled() {
+        synchronized (this) {
+            scheduled = false;
+        }
+        write();
+    }
+
+    private void write() {
+        try {
+            if (writer.write())
+                savesPerformed.incrementAndGet();
+        } catch (Exception e) {
+            System.err.println("[PersistenceScheduler] Error writing data: " + e.getMessage());
+        }
+    }
+
+    long getSavesRequested() {
+        return savesRequested.get();
+    }
+
+    long getSavesPerformed() {
+        return savesPerformed.get();
+    }
+}
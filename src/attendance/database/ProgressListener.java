@@ -0,0 +1,13 @@
+package attendance.database;
+
+/**
+ * Progress of a long read over the store, such as a report or an export
+ */
+public interface ProgressListener {
+    void update(long done, long total);
+
+    /**
+     * Whether the work should stop early
+     */
+    boolean isCancelled();
+}
@@ -0,0 +1,80 @@
+package attendance.database;
+
+import attendance.models.*;
+import java.util.*;
+
+/**
+ * Point-in-time copy of the store's collections
+ * A snapshot captured from the store also keeps its copy of the attendance table,
+ * so writers can read the columns without materializing records.
+ */
+class Snapshot {
+    final List<User> users;
+    final List<Department> departments;
+    final List<Course> courses;
+    final List<Subject> subjects;
+    final List<Section> sections;
+    final List<Student> students;
+    final List<Teacher> teachers;
+    final List<Attendance> attendance;
+    final AttendanceTable attendanceTable; // null when read from a file
+    final List<TeacherSubject> teacherSubjects;
+    final AttendanceRule rule;
+    final int[] nextIds;
+    final long sequence;
+
+    Snapshot(DataStore store, long sequence) {
+        this(store.getAllUsers(), store.getAllDepartments(), store.getAllCourses(), store.getAllSubjects(),
+                store.getAllSections(), store.getAllStudents(), store.getAllTeachers(), store.copyAttendanceTable(),
+                store.getAllTeacherSubjects(), store.getAttendanceRule(), store.getNextIds(), sequence);
+    }
+
+    private Snapshot(List<User> users, List<Department> departments, List<Course> courses, List<Subject> subjects,
+            List<Section> sections, List<Student> students, List<Teacher> teachers, AttendanceTable attendance,
+            List<TeacherSubject> teacherSubjects, AttendanceRule rule, int[] nextIds, long sequence) {
+        this(users, departments, courses, subjects, sections, students, teachers, attendance.asList(), attendance,
+                teacherSubjects, rule, nextIds, sequence);
+    }
+
+    Snapshot(List<User> users, List<Department> departments, List<Course> courses, List<Subject> subjects,
+            List<Section> sections, List<Student> students, List<Teacher> teachers, List<Attendance> attendance,
+            List<TeacherSubject> teacherSubjects, AttendanceRule rule, int[] nextIds, long sequence) {
+        this(users, departments, courses, subjects, sections, students, teachers, attendance, null,
+                teacherSubjects, rule, nextIds, sequence);
+    }
+
+    private Snapshot(List<User> users, List<Department> departments, List<Course> courses, List<Subject> subjects,
+            List<Section> sections, List<Student> students, List<Teacher> teachers, List<Attendance> attendance,
+            AttendanceTable attendanceTable, List<TeacherSubject> teacherSubjects, AttendanceRule rule,
+            int[] nextIds, long sequence) {
+        this.users = users;
+        this.departments = departments;
+        this.courses = courses;
+        this.subjects = subjects;
+        this.sections = sections;
+        this.students = students;
+        this.teachers = teachers;
+        this.attendance = attendance;
+        this.attendanceTable = attendanceTable;
+        this.teacherSubjects = teacherSubjects;
+        this.rule = rule;
+        this.nextIds = nextIds;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Same snapshot with an empty attendance list
+     */
+    Snapshot withoutAttendance() {
+        return new Snapshot(users, departments, courses, subjects, sections, students, teachers,
+                List.of(), teacherSubjects, rule, nextIds, sequence);
+    }
+
+    /**
+     * Hand the loaded collections to the store
+     */
+    void applyTo(DataStore store) {
+        store.setLoadedData(users, departments, courses, subjects, sections, students, teachers,
+                attendance, teacherSubjects, rule, nextIds);
+    }
+}
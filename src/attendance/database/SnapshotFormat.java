@@ -0,0 +1,317 @@
+package attendance.database;
+
+import attendance.models.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Versioned binary snapshot format
+ *
+ * Layout: header (magic, version, string table offset), then one section per
+ * collection, then the string table. Names, codes and other text are stored once
+ * in the string table and referenced by index (-1 for null). Attendance rows live
+ * in a separate fixed-width segment file (see AttendanceSegment); the snapshot
+ * records its generation and row count, followed by the rarely used edit reasons
+ * as a sparse list. Version 1 stored the rows inline and is still readable.
+ */
+class SnapshotFormat {
+    private static final int MAGIC = 0x41544442; // "ATDB"
+    private static final int VERSION = 2;
+    private static final int VERSION_INLINE_ROWS = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private SnapshotFormat() {
+    }
+
+    // === Writing ===
+
+    /**
+     * Write a snapshot captured from the store; its rows go to the segment file
+     * of the given generation, written separately
+     */
+    static void write(Path file, Snapshot snapshot, long segmentGeneration) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new Writer(channel);
+            out.ensure(HEADER_SIZE);
+            out.buffer.position(HEADER_SIZE);
+
+            out.putInt(snapshot.users.size());
+            for (User u : snapshot.users) {
+                out.ensure(18);
+                out.buffer.putInt(u.getId());
+                out.putString(u.getUsername());
+                out.putString(u.getPassword());
+                out.buffer.put((byte) u.getRole().ordinal());
+                out.putString(u.getEmail());
+                out.buffer.put((byte) (u.isActive() ? 1 : 0));
+            }
+
+            out.putInt(snapshot.departments.size());
+            for (Department d : snapshot.departments) {
+                out.ensure(16);
+                out.buffer.putInt(d.getId());
+                out.putString(d.getName());
+                out.putString(d.getCode());
+                out.putString(d.getDescription());
+            }
+
+            out.putInt(snapshot.courses.size());
+            for (Course c : snapshot.courses) {
+                out.ensure(20);
+                out.buffer.putInt(c.getId());
+                out.buffer.putInt(c.getDepartmentId());
+                out.putString(c.getName());
+                out.putString(c.getCode());
+                out.buffer.putInt(c.getDurationYears());
+            }
+
+            out.putInt(snapshot.subjects.size());
+            for (Subject s : snapshot.subjects) {
+                out.ensure(24);
+                out.buffer.putInt(s.getId());
+                out.buffer.putInt(s.getCourseId());
+                out.putString(s.getName());
+                out.putString(s.getCode());
+                out.buffer.putInt(s.getSemester());
+                out.buffer.putInt(s.getCredits());
+            }
+
+            out.putInt(snapshot.sections.size());
+            for (Section s : snapshot.sections) {
+                out.ensure(20);
+                out.buffer.putInt(s.getId());
+                out.buffer.putInt(s.getCourseId());
+                out.putString(s.getName());
+                out.putString(s.getAcademicYear());
+                out.buffer.putInt(s.getSemester());
+            }
+
+            out.putInt(snapshot.students.size());
+            for (Student s : snapshot.students) {
+                out.ensure(20);
+                out.buffer.putInt(s.getId());
+                out.buffer.putInt(s.getUserId());
+                out.buffer.putInt(s.getSectionId());
+                out.putString(s.getRollNumber());
+                out.putString(s.getName());
+            }
+
+            out.putInt(snapshot.teachers.size());
+            for (Teacher t : snapshot.teachers) {
+                out.ensure(16);
+                out.buffer.putInt(t.getId());
+                out.buffer.putInt(t.getUserId());
+                out.putString(t.getName());
+                out.buffer.putInt(t.getDepartmentId());
+            }
+
+            out.putInt(snapshot.teacherSubjects.size());
+            for (TeacherSubject ts : snapshot.teacherSubjects) {
+                out.ensure(12);
+                out.buffer.putInt(ts.getTeacherId());
+                out.buffer.putInt(ts.getSubjectId());
+                out.buffer.putInt(ts.getSectionId());
+            }
+
+            AttendanceRule rule = snapshot.rule != null ? snapshot.rule : new AttendanceRule();
+            out.ensure(24 + 4 + 4 * snapshot.nextIds.length);
+            out.buffer.putDouble(rule.getMinPercentage());
+            out.buffer.putDouble(rule.getGracePercentage());
+            out.buffer.putDouble(rule.getDetentionThreshold());
+            out.buffer.putInt(snapshot.nextIds.length);
+            for (int id : snapshot.nextIds)
+                out.buffer.putInt(id);
+
+            out.ensure(12);
+            out.buffer.putLong(segmentGeneration);
+            out.buffer.putInt(snapshot.attendanceTable.size());
+            Map<Integer, String> editReasons = snapshot.attendanceTable.editReasons();
+            out.putInt(editReasons.size());
+            for (Map.Entry<Integer, String> reason : editReasons.entrySet()) {
+                out.ensure(8);
+                out.buffer.putInt(reason.getKey());
+                out.putString(reason.getValue());
+            }
+
+            long stringTableOffset = out.position();
+            out.putInt(out.strings.size());
+            for (String s : out.strings.keySet()) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.ensure(4);
+                out.buffer.putInt(bytes.length);
+                out.putBytes(bytes);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(stringTableOffset).flip();
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Buffered channel writer that interns strings as it goes
+     */
+    private static final class Writer {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        long written;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                written += channel.write(buffer, written);
+            buffer.clear();
+        }
+
+        long position() {
+            return written + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putString(String value) throws IOException {
+            int ref = value == null ? -1 : strings.computeIfAbsent(value, k -> strings.size());
+            putInt(ref);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining())
+                    flush();
+                int n = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, n);
+                offset += n;
+            }
+        }
+    }
+
+    // === Reading ===
+
+    /**
+     * Read a snapshot; attendance comes back as a mapped AttendanceSegment view
+     */
+    static Snapshot read(Path file) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Snapshot too large: " + size + " bytes");
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (in.remaining() < HEADER_SIZE || in.getInt(0) != MAGIC)
+            throw new IOException("Not an attendance snapshot");
+        int version = in.getInt(4);
+        if (version != VERSION && version != VERSION_INLINE_ROWS)
+            throw new IOException("Unsupported snapshot version " + version);
+        String[] strings = readStrings(in, (int) in.getLong(8));
+        in.position(HEADER_SIZE);
+
+        Role[] roles = Role.values();
+        List<User> users = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            User u = new User(in.getInt(), str(strings, in), str(strings, in), roles[in.get()], str(strings, in));
+            u.setActive(in.get() != 0);
+            users.add(u);
+        }
+
+        List<Department> departments = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--)
+            departments.add(new Department(in.getInt(), str(strings, in), str(strings, in), str(strings, in)));
+
+        List<Course> courses = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--)
+            courses.add(new Course(in.getInt(), in.getInt(), str(strings, in), str(strings, in), in.getInt()));
+
+        List<Subject> subjects = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--)
+            subjects.add(new Subject(in.getInt(), in.getInt(), str(strings, in), str(strings, in), in.getInt(),
+                    in.getInt()));
+
+        List<Section> sections = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--)
+            sections.add(new Section(in.getInt(), in.getInt(), str(strings, in), str(strings, in), in.getInt()));
+
+        List<Student> students = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--)
+            students.add(new Student(in.getInt(), in.getInt(), in.getInt(), str(strings, in), str(strings, in)));
+
+        List<Teacher> teachers = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--)
+            teachers.add(new Teacher(in.getInt(), in.getInt(), str(strings, in), in.getInt()));
+
+        List<TeacherSubject> teacherSubjects = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--)
+            teacherSubjects.add(new TeacherSubject(in.getInt(), in.getInt(), in.getInt()));
+
+        AttendanceRule rule = new AttendanceRule(in.getDouble(), in.getDouble(), in.getDouble());
+        int[] nextIds = new int[in.getInt()];
+        for (int i = 0; i < nextIds.length; i++)
+            nextIds[i] = in.getInt();
+
+        List<Attendance> attendance;
+        if (version == VERSION_INLINE_ROWS) {
+            int rows = in.getInt();
+            attendance = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                attendance.add(AttendanceSegment.readRowBytePeriod(in, in.position()));
+                in.position(in.position() + AttendanceSegment.ROW_SIZE_BYTE_PERIOD);
+            }
+            for (int i = in.getInt(); i > 0; i--)
+                attendance.get(in.getInt()).setEditReason(str(strings, in));
+        } else {
+            long generation = in.getLong();
+            int rows = in.getInt();
+            AttendanceSegment segment = AttendanceSegment.map(AttendanceSegment.pathFor(file, generation), generation);
+            if (segment.size() != rows)
+                throw new IOException("Segment row count does not match snapshot");
+            Map<Integer, String> editReasons = new HashMap<>();
+            for (int i = in.getInt(); i > 0; i--)
+                editReasons.put(in.getInt(), str(strings, in));
+            segment.setEditReasons(editReasons);
+            attendance = segment;
+        }
+
+        return new Snapshot(users, departments, courses, subjects, sections, students, teachers,
+                attendance, teacherSubjects, rule, nextIds, 0);
+    }
+
+    private static String[] readStrings(ByteBuffer in, int offset) {
+        in.position(offset);
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static String str(String[] strings, ByteBuffer in) {
+        int ref = in.getInt();
+        return ref < 0 ? null : strings[ref];
+    }
+}
@@ -0,0 +1,57 @@
+package attendance.database;
+
+import java.util.*;
+
+/**
+ * Unique secondary key to entity id
+ *
+ * Remembers the key each id is indexed under, so a rename or delete removes the
+ * old entry even when the entity object was already changed in place. A key
+ * belongs to one id at a time; it is never silently taken over by another.
+ */
+class UniqueIndex<K> {
+    private final Map<K, Integer> idsByKey = new HashMap<>();
+    private final Map<Integer, K> keysById = new HashMap<>();
+
+    /**
+     * Index an entity under its current key, replacing the key it had before.
+     * Returns false, leaving the entity unindexed, when another id holds the key.
+     */
+    boolean put(int id, K key) {
+        remove(id);
+        if (key == null)
+            return true;
+        if (idsByKey.putIfAbsent(key, id) != null)
+            return false;
+        keysById.put(id, key);
+        return true;
+    }
+
+    /**
+     * Whether the entity with the given id may use the key: null, free or already its own
+     */
+    boolean isAvailable(K key, int id) {
+        if (key == null)
+            return true;
+        Integer holder = idsByKey.get(key);
+        return holder == null || holder == id;
+    }
+
+    void remove(int id) {
+        K oldKey = keysById.remove(id);
+        if (oldKey != null)
+            idsByKey.remove(oldKey, id);
+    }
+
+    /**
+     * Id indexed under the key, or null
+     */
+    Integer get(K key) {
+        return idsByKey.get(key);
+    }
+
+    void clear() {
+        idsByKey.clear();
+        keysById.clear();
+    }
+}
@@ -0,0 +1,448 @@
+package attendance.database;
+
+import attendance.models.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of DataStore mutations
+ * Each record is [type][length][payload][crc32]. Replaying the log on top of
+ * the last snapshot restores every change made since that snapshot was written.
+ */
+class WriteAheadLog {
+    // Record types
+    private static final byte PUT_USER = 1;
+    private static final byte PUT_DEPARTMENT = 2;
+    private static final byte PUT_COURSE = 3;
+    private static final byte PUT_SUBJECT = 4;
+    private static final byte PUT_SECTION = 5;
+    private static final byte PUT_STUDENT = 6;
+    private static final byte PUT_TEACHER = 7;
+    private static final byte PUT_ATTENDANCE_BYTE_PERIOD = 8; // written by earlier versions
+    private static final byte ADD_TEACHER_SUBJECT = 9;
+    private static final byte REMOVE_TEACHER_SUBJECT = 10;
+    private static final byte PUT_RULE = 11;
+    private static final byte BATCH = 12;
+    private static final byte PUT_ATTENDANCE = 13;
+    private static final byte DELETE_USER = 21;
+    private static final byte DELETE_DEPARTMENT = 22;
+    private static final byte DELETE_COURSE = 23;
+    private static final byte DELETE_SUBJECT = 24;
+    private static final byte DELETE_SECTION = 25;
+    private static final byte DELETE_STUDENT = 26;
+    private static final byte DELETE_TEACHER = 27;
+
+    private static final int MAX_RECORD_LENGTH = 64 << 20;
+
+    private final Path path;
+    private final Path compactingPath;
+
+    // Records are encoded into memory by the mutating thread and written out in batches.
+    // Lock order is fileLock, then this.
+    private final Object fileLock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(8192);
+    private FileOutputStream out;
+    private long size;
+
+    WriteAheadLog(Path path) {
+        this.path = path;
+        this.compactingPath = Paths.get(path + ".compacting");
+    }
+
+    /**
+     * Append the current state of an entity
+     */
+    synchronized void appendPut(Object entity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        byte type = writeEntity(payload, entity);
+        append(type, bytes.toByteArray());
+    }
+
+    /**
+     * Append several entities as one record, so replay applies all of them or none
+     */
+    synchronized void appendPutAll(List<?> entities) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * entities.size() + 4);
+        DataOutputStream payload = new DataOutputStream(bytes);
+        payload.writeInt(entities.size());
+        ByteArrayOutputStream entityBytes = new ByteArrayOutputStream(128);
+        for (Object entity : entities) {
+            entityBytes.reset();
+            byte type = writeEntity(new DataOutputStream(entityBytes), entity);
+            payload.writeByte(type);
+            payload.writeInt(entityBytes.size());
+            entityBytes.writeTo(payload);
+        }
+        append(BATCH, bytes.toByteArray());
+    }
+
+    /**
+     * Append the deletion of an entity by id
+     */
+    synchronized void appendDelete(Class<?> kind, int id) throws IOException {
+        byte type = (byte) (typeOf(kind) + 20);
+        append(type, ByteBuffer.allocate(4).putInt(id).array());
+    }
+
+    /**
+     * Append the removal of a teacher-subject assignment
+     */
+    synchronized void appendRemove(TeacherSubject ts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12);
+        writeEntity(new DataOutputStream(bytes), ts);
+        append(REMOVE_TEACHER_SUBJECT, bytes.toByteArray());
+    }
+
+    private void append(byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+
+        DataOutputStream record = new DataOutputStream(pending);
+        record.writeByte(type);
+        record.writeInt(payload.length);
+        record.write(payload);
+        record.writeInt((int) crc.getValue());
+        size += 9 + payload.length;
+    }
+
+    /**
+     * Write every buffered record to the log file in a single write
+     * Returns false when there was nothing to write
+     */
+    boolean writePending() throws IOException {
+        synchronized (fileLock) {
+            return writePendingLocked();
+        }
+    }
+
+    private boolean writePendingLocked() throws IOException {
+        byte[] batch;
+        synchronized (this) {
+            if (pending.size() == 0)
+                return false;
+            batch = pending.toByteArray();
+            pending.reset();
+        }
+        if (out == null) {
+            Files.createDirectories(path.getParent());
+            out = new FileOutputStream(path.toFile(), true);
+        }
+        out.write(batch);
+        return true;
+    }
+
+    /**
+     * Write buffered records and force them to the storage device
+     */
+    void sync() throws IOException {
+        synchronized (fileLock) {
+            writePendingLocked();
+            if (out != null)
+                out.getFD().sync();
+        }
+    }
+
+    /**
+     * Size of the active log in bytes, including records not yet written
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Move the active log aside so a snapshot can be written in the background.
+     * Records appended from now on go to a fresh log.
+     */
+    void rotate() throws IOException {
+        synchronized (fileLock) {
+            writePendingLocked();
+            closeFile();
+            if (Files.exists(path)) {
+                if (Files.exists(compactingPath)) {
+                    // A previous compaction did not finish; keep its records in front of ours
+                    Files.write(compactingPath, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                    Files.delete(path);
+                } else {
+                    Files.move(path, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            synchronized (this) {
+                size = pending.size();
+            }
+        }
+    }
+
+    /**
+     * Drop the rotated log once its records are covered by a snapshot
+     */
+    void discardRotated() throws IOException {
+        Files.deleteIfExists(compactingPath);
+    }
+
+    /**
+     * Drop every logged record, written or not
+     */
+    void truncate() throws IOException {
+        synchronized (fileLock) {
+            closeFile();
+            synchronized (this) {
+                pending.reset();
+                size = 0;
+            }
+            Files.deleteIfExists(compactingPath);
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Move the rotated and the active log into the given folder, keeping their
+     * names; records appended from now on go to a fresh log
+     */
+    void moveTo(Path dir) throws IOException {
+        synchronized (fileLock) {
+            closeFile();
+            synchronized (this) {
+                pending.reset();
+                size = 0;
+            }
+            for (Path file : new Path[] { compactingPath, path }) {
+                if (Files.exists(file))
+                    Files.move(file, dir.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private void closeFile() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    /**
+     * Replay the rotated and the active log into the store
+     * Returns the number of records applied
+     */
+    int replay(DataStore store) throws IOException {
+        synchronized (fileLock) {
+            closeFile();
+            int applied = replayFile(compactingPath, store) + replayFile(path, store);
+            synchronized (this) {
+                size = (Files.exists(path) ? Files.size(path) : 0) + pending.size();
+            }
+            return applied;
+        }
+    }
+
+    private int replayFile(Path file, DataStore store) throws IOException {
+        if (!Files.exists(file))
+            return 0;
+
+        int applied = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte type;
+                byte[] payload;
+                int checksum;
+                try {
+                    type = in.readByte();
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_LENGTH)
+                        break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(type);
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum)
+                    break;
+
+                apply(type, new DataInputStream(new ByteArrayInputStream(payload)), store);
+                validLength += 9 + payload.length;
+                applied++;
+            }
+        }
+
+        // Cut off a record torn by a crash so new appends start on a clean boundary
+        if (validLength < Files.size(file)) {
+            System.err.println("[WriteAheadLog] Discarding torn tail of " + file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return applied;
+    }
+
+    private void apply(byte type, DataInputStream in, DataStore store) throws IOException {
+        switch (type) {
+            case PUT_USER -> {
+                User user = new User(in.readInt(), readString(in), readString(in),
+                        Role.valueOf(in.readUTF()), readString(in));
+                user.setActive(in.readBoolean());
+                store.replayPut(user);
+            }
+            case PUT_DEPARTMENT -> store.replayPut(new Department(in.readInt(), readString(in),
+                    readString(in), readString(in)));
+            case PUT_COURSE -> store.replayPut(new Course(in.readInt(), in.readInt(), readString(in),
+                    readString(in), in.readInt()));
+            case PUT_SUBJECT -> store.replayPut(new Subject(in.readInt(), in.readInt(), readString(in),
+                    readString(in), in.readInt(), in.readInt()));
+            case PUT_SECTION -> store.replayPut(new Section(in.readInt(), in.readInt(), readString(in),
+                    readString(in), in.readInt()));
+            case PUT_STUDENT -> store.replayPut(new Student(in.readInt(), in.readInt(), in.readInt(),
+                    readString(in), readString(in)));
+            case PUT_TEACHER -> store.replayPut(new Teacher(in.readInt(), in.readInt(), readString(in),
+                    in.readInt()));
+            case PUT_ATTENDANCE -> {
+                Attendance attendance = new Attendance(in.readInt(), in.readInt(), in.readInt(),
+                        LocalDate.ofEpochDay(in.readInt()), in.readInt(),
+                        AttendanceStatus.values()[in.readByte()], in.readInt(), in.readBoolean());
+                attendance.setEditReason(readString(in));
+                store.replayPut(attendance);
+            }
+            case PUT_ATTENDANCE_BYTE_PERIOD -> {
+                Attendance attendance = new Attendance(in.readInt(), in.readInt(), in.readInt(),
+                        LocalDate.ofEpochDay(in.readInt()), in.readUnsignedByte(),
+                        AttendanceStatus.values()[in.readByte()], in.readInt(), in.readBoolean());
+                attendance.setEditReason(readString(in));
+                store.replayPut(attendance);
+            }
+            case ADD_TEACHER_SUBJECT -> store.replayPut(new TeacherSubject(in.readInt(), in.readInt(), in.readInt()));
+            case REMOVE_TEACHER_SUBJECT -> store.replayRemove(
+                    new TeacherSubject(in.readInt(), in.readInt(), in.readInt()));
+            case PUT_RULE -> store.replayPut(new AttendanceRule(in.readDouble(), in.readDouble(), in.readDouble()));
+            case BATCH -> {
+                for (int i = in.readInt(); i > 0; i--) {
+                    byte entryType = in.readByte();
+                    byte[] entry = new byte[in.readInt()];
+                    in.readFully(entry);
+                    apply(entryType, new DataInputStream(new ByteArrayInputStream(entry)), store);
+                }
+            }
+            case DELETE_USER -> store.replayDelete(User.class, in.readInt());
+            case DELETE_DEPARTMENT -> store.replayDelete(Department.class, in.readInt());
+            case DELETE_COURSE -> store.replayDelete(Course.class, in.readInt());
+            case DELETE_SUBJECT -> store.replayDelete(Subject.class, in.readInt());
+            case DELETE_SECTION -> store.replayDelete(Section.class, in.readInt());
+            case DELETE_STUDENT -> store.replayDelete(Student.class, in.readInt());
+            case DELETE_TEACHER -> store.replayDelete(Teacher.class, in.readInt());
+            default -> throw new IOException("Unknown log record type " + type);
+        }
+    }
+
+    private static byte writeEntity(DataOutputStream out, Object entity) throws IOException {
+        if (entity instanceof User u) {
+            out.writeInt(u.getId());
+            writeString(out, u.getUsername());
+            writeString(out, u.getPassword());
+            out.writeUTF(u.getRole().name());
+            writeString(out, u.getEmail());
+            out.writeBoolean(u.isActive());
+            return PUT_USER;
+        } else if (entity instanceof Department d) {
+            out.writeInt(d.getId());
+            writeString(out, d.getName());
+            writeString(out, d.getCode());
+            writeString(out, d.getDescription());
+            return PUT_DEPARTMENT;
+        } else if (entity instanceof Course c) {
+            out.writeInt(c.getId());
+            out.writeInt(c.getDepartmentId());
+            writeString(out, c.getName());
+            writeString(out, c.getCode());
+            out.writeInt(c.getDurationYears());
+            return PUT_COURSE;
+        } else if (entity instanceof Subject s) {
+            out.writeInt(s.getId());
+            out.writeInt(s.getCourseId());
+            writeString(out, s.getName());
+            writeString(out, s.getCode());
+            out.writeInt(s.getSemester());
+            out.writeInt(s.getCredits());
+            return PUT_SUBJECT;
+        } else if (entity instanceof Section s) {
+            out.writeInt(s.getId());
+            out.writeInt(s.getCourseId());
+            writeString(out, s.getName());
+            writeString(out, s.getAcademicYear());
+            out.writeInt(s.getSemester());
+            return PUT_SECTION;
+        } else if (entity instanceof Student s) {
+            out.writeInt(s.getId());
+            out.writeInt(s.getUserId());
+            out.writeInt(s.getSectionId());
+            writeString(out, s.getRollNumber());
+            writeString(out, s.getName());
+            return PUT_STUDENT;
+        } else if (entity instanceof Teacher t) {
+            out.writeInt(t.getId());
+            out.writeInt(t.getUserId());
+            writeString(out, t.getName());
+            out.writeInt(t.getDepartmentId());
+            return PUT_TEACHER;
+        } else if (entity instanceof Attendance a) {
+            out.writeInt(a.getId());
+            out.writeInt(a.getStudentId());
+            out.writeInt(a.getSubjectId());
+            out.writeInt((int) a.getDate().toEpochDay());
+            out.writeInt(a.getPeriod());
+            out.writeByte(a.getStatus().ordinal());
+            out.writeInt(a.getMarkedBy());
+            out.writeBoolean(a.isLateEntry());
+            writeString(out, a.getEditReason());
+            return PUT_ATTENDANCE;
+        } else if (entity instanceof TeacherSubject ts) {
+            out.writeInt(ts.getTeacherId());
+            out.writeInt(ts.getSubjectId());
+            out.writeInt(ts.getSectionId());
+            return ADD_TEACHER_SUBJECT;
+        } else if (entity instanceof AttendanceRule r) {
+            out.writeDouble(r.getMinPercentage());
+            out.writeDouble(r.getGracePercentage());
+            out.writeDouble(r.getDetentionThreshold());
+            return PUT_RULE;
+        }
+        throw new IllegalArgumentException("Cannot log " + entity.getClass().getSimpleName());
+    }
+
+    private static byte typeOf(Class<?> kind) {
+        if (kind == User.class)
+            return PUT_USER;
+        if (kind == Department.class)
+            return PUT_DEPARTMENT;
+        if (kind == Course.class)
+            return PUT_COURSE;
+        if (kind == Subject.class)
+            return PUT_SUBJECT;
+        if (kind == Section.class)
+            return PUT_SECTION;
+        if (kind == Student.class)
+            return PUT_STUDENT;
+        if (kind == Teacher.class)
+            return PUT_TEACHER;
+        throw new IllegalArgumentException("Cannot log deletion of " + kind.getSimpleName());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
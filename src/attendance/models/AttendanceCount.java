@@ -0,0 +1,40 @@
+package attendance.models;
+
+/**
+ * Marks counted for one student, overall or in one subject
+ * Attended counts present and late marks.
+ */
+public class AttendanceCount {
+    private final int studentId;
+    private final int subjectId; // 0 when counted over all subjects
+    private final int attended;
+    private final int total;
+
+    public AttendanceCount(int studentId, int subjectId, int attended, int total) {
+        this.studentId = studentId;
+        this.subjectId = subjectId;
+        this.attended = attended;
+        this.total = total;
+    }
+
+    // Getters
+    public int getStudentId() {
+        return studentId;
+    }
+
+    public int getSubjectId() {
+        return subjectId;
+    }
+
+    public int getAttended() {
+        return attended;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public double getPercentage() {
+        return total == 0 ? 0 : (attended * 100.0) / total;
+    }
+}
@@ -0,0 +1,64 @@
+package attendance.models;
+
+import java.time.LocalDate;
+
+/**
+ * One mark in a batch passed to DataStore.addAttendanceBatch
+ */
+public class AttendanceEntry {
+    /**
+     * What the batch did with an entry
+     */
+    public enum Result {
+        INSERTED,
+        UPDATED
+    }
+
+    private final int studentId;
+    private final int subjectId;
+    private final LocalDate date;
+    private final int period;
+    private final AttendanceStatus status;
+    private final int markedBy;
+    private final boolean lateEntry;
+
+    public AttendanceEntry(int studentId, int subjectId, LocalDate date, int period,
+            AttendanceStatus status, int markedBy, boolean lateEntry) {
+        this.studentId = studentId;
+        this.subjectId = subjectId;
+        this.date = date;
+        this.period = period;
+        this.status = status;
+        this.markedBy = markedBy;
+        this.lateEntry = lateEntry;
+    }
+
+    // Getters
+    public int getStudentId() {
+        return studentId;
+    }
+
+    public int getSubjectId() {
+        return subjectId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public AttendanceStatus getStatus() {
+        return status;
+    }
+
+    public int getMarkedBy() {
+        return markedBy;
+    }
+
+    public boolean isLateEntry() {
+        return lateEntry;
+    }
+}
@@ -0,0 +1,42 @@
+package attendance.models;
+
+import java.time.LocalDate;
+
+/**
+ * Which marks DataStore.recentAttendance returns
+ * An id of 0 matches any student or subject; a null date leaves that end of the range open.
+ */
+public class AttendanceFilter {
+    private final int studentId;
+    private final int subjectId;
+    private final LocalDate fromDate;
+    private final LocalDate toDate;
+
+    public AttendanceFilter(int studentId, int subjectId, LocalDate fromDate, LocalDate toDate) {
+        this.studentId = studentId;
+        this.subjectId = subjectId;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+    }
+
+    public static AttendanceFilter all() {
+        return new AttendanceFilter(0, 0, null, null);
+    }
+
+    // Getters
+    public int getStudentId() {
+        return studentId;
+    }
+
+    public int getSubjectId() {
+        return subjectId;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+}
@@ -0,0 +1,92 @@
+package attendance.services;
+
+import attendance.models.AttendanceCount;
+import attendance.models.AttendanceRule;
+
+import java.util.*;
+
+/**
+ * Sorts attendance counts into defaulter buckets using the attendance rule
+ *
+ * Critical is below the detention threshold, Warning below the minimum percentage.
+ * Counts come from DataStore's running counters or from one grouped pass over a
+ * DataSnapshot, so classifying costs one step per student (or student and subject).
+ */
+public class DefaultersEngine {
+    public enum Level {
+        WARNING,
+        CRITICAL
+    }
+
+    /**
+     * Defaulters found in one run, lowest attendance first within each bucket
+     */
+    public static class Result {
+        private final List<AttendanceCount> critical;
+        private final List<AttendanceCount> warning;
+
+        private Result(List<AttendanceCount> critical, List<AttendanceCount> warning) {
+            this.critical = critical;
+            this.warning = warning;
+        }
+
+        public List<AttendanceCount> getCritical() {
+            return critical;
+        }
+
+        public List<AttendanceCount> getWarning() {
+            return warning;
+        }
+
+        /**
+         * Critical defaulters followed by warnings
+         */
+        public List<AttendanceCount> getAll() {
+            List<AttendanceCount> all = new ArrayList<>(critical.size() + warning.size());
+            all.addAll(critical);
+            all.addAll(warning);
+            return all;
+        }
+
+        public int size() {
+            return critical.size() + warning.size();
+        }
+    }
+
+    private final AttendanceRule rule;
+
+    public DefaultersEngine(AttendanceRule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Bucket for one count, or null when it meets the minimum or has no marks yet
+     */
+    public Level classify(AttendanceCount count) {
+        if (count.getTotal() == 0)
+            return null;
+        double percentage = count.getPercentage();
+        if (percentage < rule.getDetentionThreshold())
+            return Level.CRITICAL;
+        if (percentage < rule.getMinPercentage())
+            return Level.WARNING;
+        return null;
+    }
+
+    public Result findDefaulters(Collection<AttendanceCount> counts) {
+        List<AttendanceCount> critical = new ArrayList<>();
+        List<AttendanceCount> warning = new ArrayList<>();
+        for (AttendanceCount count : counts) {
+            Level level = classify(count);
+            if (level == Level.CRITICAL)
+                critical.add(count);
+            else if (level == Level.WARNING)
+                warning.add(count);
+        }
+
+        Comparator<AttendanceCount> lowestFirst = Comparator.comparingDouble(AttendanceCount::getPercentage);
+        critical.sort(lowestFirst);
+        warning.sort(lowestFirst);
+        return new Result(critical, warning);
+    }
+}
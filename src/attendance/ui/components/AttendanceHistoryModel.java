@@ -0,0 +1,138 @@
+package attendance.ui.components;
+
+import attendance.database.AttendancePage;
+import attendance.database.DataStore;
+import attendance.models.*;
+
+import javax.swing.table.AbstractTableModel;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table model over the attendance history matching a filter, newest first
+ *
+ * Pages come from DataStore.recentAttendance as the table scrolls towards the last
+ * loaded row, so the whole history is reachable without reading it up front. The row
+ * count is only what has been loaded so far; the scroll bar grows as pages arrive
+ * rather than being sized to the full history, which would need a count of every
+ * match. Rows hold ids; a record that was changed since it was loaded is read again
+ * from the store when its row is next shown, and names are resolved by id when a
+ * cell is painted.
+ */
+public class AttendanceHistoryModel extends AbstractTableModel {
+    public static final int ACTION_COLUMN = 5;
+    private static final String[] COLUMNS = { "Date", "Student", "Subject", "Period", "Status", "Action" };
+    private static final int PAGE_SIZE = 100;
+
+    private final DataStore dataStore;
+    private AttendanceFilter filter = AttendanceFilter.all();
+    private AttendancePage.Cursor nextCursor;
+    private boolean hasMore;
+    private int[] ids = new int[0];
+    private Attendance[] loaded = new Attendance[0];
+
+    public AttendanceHistoryModel(DataStore dataStore) {
+        this.dataStore = dataStore;
+    }
+
+    /**
+     * Show the history matching a filter, starting again from its newest page
+     */
+    public void setFilter(AttendanceFilter filter) {
+        this.filter = filter;
+        nextCursor = null;
+        ids = new int[0];
+        loaded = new Attendance[0];
+        fireTableDataChanged();
+        hasMore = true;
+        loadNextPage();
+    }
+
+    /**
+     * Load pages until the given row is at least half a page from the end of what is
+     * loaded, or the history runs out; call as the visible rows change
+     */
+    public void ensureLoaded(int lastVisibleRow) {
+        while (hasMore && lastVisibleRow + PAGE_SIZE / 2 >= ids.length)
+            loadNextPage();
+    }
+
+    private void loadNextPage() {
+        AttendancePage page = dataStore.recentAttendance(filter, PAGE_SIZE, nextCursor);
+        nextCursor = page.getNextCursor();
+        hasMore = page.hasMore();
+
+        List<Attendance> records = page.getRecords();
+        if (records.isEmpty())
+            return;
+        int first = ids.length;
+        ids = Arrays.copyOf(ids, first + records.size());
+        loaded = Arrays.copyOf(loaded, ids.length);
+        for (int i = 0; i < records.size(); i++) {
+            ids[first + i] = records.get(i).getId();
+            loaded[first + i] = records.get(i);
+        }
+        fireTableRowsInserted(first, ids.length - 1);
+    }
+
+    /**
+     * Record shown in a row, or null if it was deleted
+     */
+    public Attendance getAttendance(int row) {
+        if (loaded[row] == null)
+            loaded[row] = dataStore.getAttendanceById(ids[row]);
+        return loaded[row];
+    }
+
+    /**
+     * Forget the loaded rows of a changed student, subject and date so they are read again
+     */
+    public void attendanceChanged(int studentId, int subjectId, LocalDate date) {
+        for (int row = 0; row < loaded.length; row++) {
+            Attendance a = loaded[row];
+            if (a != null && a.getStudentId() == studentId && a.getSubjectId() == subjectId
+                    && a.getDate().equals(date)) {
+                loaded[row] = null;
+                fireTableRowsUpdated(row, row);
+            }
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return ids.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Attendance a = getAttendance(row);
+        if (a == null)
+            return "-";
+
+        return switch (column) {
+            case 0 -> a.getDate().toString();
+            case 1 -> {
+                Student student = dataStore.getStudentById(a.getStudentId());
+                yield student != null ? student.getName() : "-";
+            }
+            case 2 -> {
+                Subject subject = dataStore.getSubjectById(a.getSubjectId());
+                yield subject != null ? subject.getName() : "-";
+            }
+            case 3 -> String.valueOf(a.getPeriod());
+            case 4 -> a.getStatus().toString();
+            default -> "Edit";
+        };
+    }
+}
@@ -4,17 +4,30 @@ import attendance.ui.theme.ThemeColors;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.*;
 
 /**
  * Theme-aware chart panel for bar and line charts.
+ *
+ * The chart is drawn once into an off-screen image and repaints just copy it; the
+ * image is redrawn when the data, size or theme changes. Series with more points
+ * than the chart has room for are decimated: lines keep each bucket's low and high
+ * point, bars show each bucket's average.
  */
 public class ChartPanel extends JPanel {
+    private static final int MIN_BAR_WIDTH = 4;
+    private static final int DOT_SIZE = 8;
+
     private String[] labels;
     private double[] values;
     private ChartType type;
     private Color chartColor;
 
+    private BufferedImage cache; // null when the chart must be redrawn
+    private double cacheScale;
+    private int cacheStyleVersion;
+
     public enum ChartType {
         BAR, LINE
     }
@@ -27,17 +40,67 @@ public class ChartPanel extends JPanel {
         setOpaque(false);
     }
 
+    /**
+     * Replace the series; labels and values are matched by index
+     */
+    public void setData(String[] labels, double[] values) {
+        this.labels = labels;
+        this.values = values;
+        invalidateChart();
+    }
+
+    public void setChartColor(Color color) {
+        this.chartColor = color;
+        invalidateChart();
+    }
+
+    private void invalidateChart() {
+        cache = null;
+        repaint();
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0 || values.length == 0)
+            return;
+
+        // Render at device resolution so scaled displays stay sharp
         Graphics2D g2 = (Graphics2D) g.create();
+        double scale = g2.getTransform().getScaleX();
+        int imageWidth = (int) Math.ceil(width * scale);
+        int imageHeight = (int) Math.ceil(height * scale);
+        if (cache == null || cache.getWidth() != imageWidth || cache.getHeight() != imageHeight
+                || cacheScale != scale || cacheStyleVersion != ThemeColors.getStyleVersion()) {
+            cache = createCacheImage(imageWidth, imageHeight);
+            cacheScale = scale;
+            cacheStyleVersion = ThemeColors.getStyleVersion();
+            Graphics2D ig = cache.createGraphics();
+            ig.scale(scale, scale);
+            renderChart(ig, width, height);
+            ig.dispose();
+        }
+        g2.drawImage(cache, 0, 0, width, height, null);
+        g2.dispose();
+    }
+
+    private BufferedImage createCacheImage(int width, int height) {
+        GraphicsConfiguration config = getGraphicsConfiguration();
+        if (config != null)
+            return config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private void renderChart(Graphics2D g2, int width, int height) {
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        int width = getWidth();
-        int height = getHeight();
         int padding = ThemeColors.PADDING_CARD;
         int chartWidth = width - padding * 2;
         int chartHeight = height - padding * 2 - 30; // Leave room for labels
+        if (chartWidth <= 0 || chartHeight <= 0)
+            return;
 
         // Find max value
         double maxValue = 0;
@@ -47,34 +110,44 @@ public class ChartPanel extends JPanel {
         if (maxValue == 0)
             maxValue = 100;
 
+        double[] labelCenters;
         if (type == ChartType.BAR) {
-            drawBarChart(g2, padding, padding, chartWidth, chartHeight, maxValue);
+            labelCenters = drawBarChart(g2, padding, padding, chartWidth, chartHeight, maxValue);
         } else {
-            drawLineChart(g2, padding, padding, chartWidth, chartHeight, maxValue);
+            labelCenters = drawLineChart(g2, padding, padding, chartWidth, chartHeight, maxValue);
         }
 
-        // Draw labels
+        // Draw labels, skipping any that would overlap the one before
         g2.setFont(ThemeColors.FONT_SMALL);
         g2.setColor(ThemeColors.TEXT_MUTED);
+        FontMetrics fm = g2.getFontMetrics();
         int labelY = height - padding / 2;
-        int barWidth = chartWidth / values.length;
-        for (int i = 0; i < labels.length; i++) {
-            FontMetrics fm = g2.getFontMetrics();
-            int labelX = padding + i * barWidth + (barWidth - fm.stringWidth(labels[i])) / 2;
+        int lastRight = Integer.MIN_VALUE;
+        for (int i = 0; i < labels.length && i < labelCenters.length; i++) {
+            int labelWidth = fm.stringWidth(labels[i]);
+            int labelX = (int) Math.round(labelCenters[i] - labelWidth / 2.0);
+            if (labelX < lastRight + ThemeColors.GAP_SMALL)
+                continue;
             g2.drawString(labels[i], labelX, labelY);
+            lastRight = labelX + labelWidth;
         }
-
-        g2.dispose();
     }
 
-    private void drawBarChart(Graphics2D g2, int x, int y, int width, int height, double maxValue) {
-        int barCount = values.length;
+    /**
+     * Draw the bars, averaging neighbours when they would be too thin; returns the
+     * centre of each value's bar for its label
+     */
+    private double[] drawBarChart(Graphics2D g2, int x, int y, int width, int height, double maxValue) {
         int gap = ThemeColors.GAP_SMALL;
-        int barWidth = (width - gap * (barCount + 1)) / barCount;
+        int barCount = Math.max(1, Math.min(values.length, (width - gap) / (MIN_BAR_WIDTH + gap)));
+        double[] bars = values.length == barCount ? values : averageBuckets(values, barCount);
+        int barWidth = Math.max(1, (width - gap * (barCount + 1)) / barCount);
         int radius = ThemeColors.BORDER_RADIUS_SMALL;
+        g2.setFont(ThemeColors.FONT_SMALL);
+        FontMetrics fm = g2.getFontMetrics();
 
         for (int i = 0; i < barCount; i++) {
-            int barHeight = (int) ((values[i] / maxValue) * height);
+            int barHeight = (int) ((bars[i] / maxValue) * height);
             int barX = x + gap + i * (barWidth + gap);
             int barY = y + height - barHeight;
 
@@ -97,25 +170,43 @@ public class ChartPanel extends JPanel {
             }
             g2.fillRoundRect(barX, barY, barWidth, barHeight, radius, radius);
 
-            // Value label
-            g2.setFont(ThemeColors.FONT_SMALL);
-            g2.setColor(ThemeColors.TEXT_PRIMARY);
-            String valueStr = String.format("%.0f", values[i]);
-            FontMetrics fm = g2.getFontMetrics();
-            g2.drawString(valueStr, barX + (barWidth - fm.stringWidth(valueStr)) / 2, barY - 5);
+            // Value label, when it fits over the bar
+            String valueStr = String.format("%.0f", bars[i]);
+            if (fm.stringWidth(valueStr) <= barWidth + gap) {
+                g2.setColor(ThemeColors.TEXT_PRIMARY);
+                g2.drawString(valueStr, barX + (barWidth - fm.stringWidth(valueStr)) / 2, barY - 5);
+            }
+        }
+
+        double[] centers = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            int bar = (int) ((long) i * barCount / values.length);
+            centers[i] = x + gap + bar * (barWidth + gap) + barWidth / 2.0;
         }
+        return centers;
     }
 
-    private void drawLineChart(Graphics2D g2, int x, int y, int width, int height, double maxValue) {
-        int pointCount = values.length;
-        int stepX = width / (pointCount - 1);
+    /**
+     * Draw the line through the decimated points; returns the x of each value's point
+     * for its label
+     */
+    private double[] drawLineChart(Graphics2D g2, int x, int y, int width, int height, double maxValue) {
+        int count = values.length;
+        double stepX = count > 1 ? (double) width / (count - 1) : 0;
+        double[] centers = new double[count];
+        for (int i = 0; i < count; i++)
+            centers[i] = count > 1 ? x + i * stepX : x + width / 2.0;
 
+        // Two points per pixel column are all a line can show
+        int[] kept = count > width ? minMaxIndices(values, Math.max(1, width / 2)) : null;
+        int pointCount = kept != null ? kept.length : count;
         int[] xPoints = new int[pointCount];
         int[] yPoints = new int[pointCount];
 
-        for (int i = 0; i < pointCount; i++) {
-            xPoints[i] = x + i * stepX;
-            yPoints[i] = y + height - (int) ((values[i] / maxValue) * height);
+        for (int p = 0; p < pointCount; p++) {
+            int i = kept != null ? kept[p] : p;
+            xPoints[p] = (int) Math.round(centers[i]);
+            yPoints[p] = y + height - (int) ((values[i] / maxValue) * height);
         }
 
         // Fill area under line (if gradients enabled)
@@ -124,9 +215,9 @@ public class ChartPanel extends JPanel {
             int[] fillY = new int[pointCount + 2];
             System.arraycopy(xPoints, 0, fillX, 0, pointCount);
             System.arraycopy(yPoints, 0, fillY, 0, pointCount);
-            fillX[pointCount] = x + width;
+            fillX[pointCount] = xPoints[pointCount - 1];
             fillY[pointCount] = y + height;
-            fillX[pointCount + 1] = x;
+            fillX[pointCount + 1] = xPoints[0];
             fillY[pointCount + 1] = y + height;
 
             g2.setPaint(new GradientPaint(
@@ -142,22 +233,75 @@ public class ChartPanel extends JPanel {
             g2.drawPolyline(xPoints, yPoints, pointCount);
         }
 
-        // Line
+        // Line, thinner when the points are dense
         g2.setColor(chartColor);
-        g2.setStroke(new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2.setStroke(new BasicStroke(stepX >= DOT_SIZE ? 3 : 2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
         g2.drawPolyline(xPoints, yPoints, pointCount);
 
-        // Points
-        int dotSize = 8;
-        for (int i = 0; i < pointCount; i++) {
-            if (ThemeColors.HAS_GLOW) {
-                g2.setColor(ThemeColors.withAlpha(chartColor, 60));
-                g2.fillOval(xPoints[i] - dotSize, yPoints[i] - dotSize, dotSize * 2, dotSize * 2);
+        // Points, only when they have room
+        if (count == 1 || stepX >= DOT_SIZE * 2) {
+            for (int i = 0; i < pointCount; i++) {
+                if (ThemeColors.HAS_GLOW) {
+                    g2.setColor(ThemeColors.withAlpha(chartColor, 60));
+                    g2.fillOval(xPoints[i] - DOT_SIZE, yPoints[i] - DOT_SIZE, DOT_SIZE * 2, DOT_SIZE * 2);
+                }
+                g2.setColor(chartColor);
+                g2.fillOval(xPoints[i] - DOT_SIZE / 2, yPoints[i] - DOT_SIZE / 2, DOT_SIZE, DOT_SIZE);
+                g2.setColor(ThemeColors.BG_DARK);
+                g2.fillOval(xPoints[i] - 2, yPoints[i] - 2, 4, 4);
             }
-            g2.setColor(chartColor);
-            g2.fillOval(xPoints[i] - dotSize / 2, yPoints[i] - dotSize / 2, dotSize, dotSize);
-            g2.setColor(ThemeColors.BG_DARK);
-            g2.fillOval(xPoints[i] - 2, yPoints[i] - 2, 4, 4);
         }
+        return centers;
+    }
+
+    /**
+     * Indices of the lowest and highest value in each bucket, plus the first and last
+     * index, in ascending order; keeps every peak and dip a dense line would show
+     */
+    static int[] minMaxIndices(double[] values, int buckets) {
+        int n = values.length;
+        int[] kept = new int[buckets * 2 + 2];
+        int size = 0;
+        kept[size++] = 0;
+        for (int b = 0; b < buckets; b++) {
+            int from = (int) ((long) b * n / buckets);
+            int to = (int) ((long) (b + 1) * n / buckets);
+            if (from >= to)
+                continue;
+            int min = from;
+            int max = from;
+            for (int i = from + 1; i < to; i++) {
+                if (values[i] < values[min])
+                    min = i;
+                if (values[i] > values[max])
+                    max = i;
+            }
+            int first = Math.min(min, max);
+            int second = Math.max(min, max);
+            if (first > kept[size - 1])
+                kept[size++] = first;
+            if (second > kept[size - 1])
+                kept[size++] = second;
+        }
+        if (kept[size - 1] != n - 1)
+            kept[size++] = n - 1;
+        return Arrays.copyOf(kept, size);
+    }
+
+    /**
+     * Average of each of the given number of equal runs of values
+     */
+    static double[] averageBuckets(double[] values, int buckets) {
+        int n = values.length;
+        double[] averages = new double[buckets];
+        for (int b = 0; b < buckets; b++) {
+            int from = (int) ((long) b * n / buckets);
+            int to = (int) ((long) (b + 1) * n / buckets);
+            double sum = 0;
+            for (int i = from; i < to; i++)
+                sum += values[i];
+            averages[b] = to > from ? sum / (to - from) : 0;
+        }
+        return averages;
     }
 }
@@ -25,6 +25,13 @@ public class DashboardCard extends JPanel {
         setCursor(new Cursor(Cursor.HAND_CURSOR));
     }
 
+    public void setValue(String value) {
+        if (!value.equals(this.value)) {
+            this.value = value;
+            repaint();
+        }
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -0,0 +1,155 @@
+package attendance.ui.components;
+
+import attendance.database.DataSnapshot;
+import attendance.database.DataStore;
+import attendance.database.ProgressListener;
+import attendance.ui.theme.ThemeColors;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Runs a report off the event thread against a snapshot of the data store.
+ *
+ * A small dialog shows progress and lets the user cancel. The result is handed
+ * back on the event thread; failures are shown as an error message.
+ */
+public class ReportWorker<T> extends SwingWorker<T, Void> {
+    /**
+     * The work behind a report; long loops should report progress and stop once cancelled
+     */
+    public interface Task<T> {
+        T run(DataSnapshot snapshot, ProgressListener progress) throws Exception;
+    }
+
+    private static final int DIALOG_DELAY_MS = 300;
+
+    // Two reports run at a time and a few more may wait; beyond that the user is told to wait
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(4), r -> {
+                Thread thread = new Thread(r, "report-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private final Component parent;
+    private final String title;
+    private final Task<T> task;
+    private final Consumer<T> onResult;
+    private final JDialog dialog;
+
+    private ReportWorker(Component parent, String title, Task<T> task, Consumer<T> onResult) {
+        this.parent = parent;
+        this.title = title;
+        this.task = task;
+        this.onResult = onResult;
+        this.dialog = createDialog();
+    }
+
+    /**
+     * Start a report; must be called on the event thread
+     */
+    public static <T> void run(Component parent, String title, Task<T> task, Consumer<T> onResult) {
+        ReportWorker<T> worker = new ReportWorker<>(parent, title, task, onResult);
+        try {
+            executor.execute(worker);
+        } catch (RejectedExecutionException e) {
+            JOptionPane.showMessageDialog(parent,
+                    "Other reports are still running. Please try again when they finish.",
+                    title, JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        // Quick reports finish before the dialog would appear
+        Timer timer = new Timer(DIALOG_DELAY_MS, e -> {
+            if (!worker.isDone())
+                worker.dialog.setVisible(true);
+        });
+        timer.setRepeats(false);
+        timer.start();
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+        DataSnapshot snapshot = DataStore.getInstance().snapshot();
+        return task.run(snapshot, new ProgressListener() {
+            @Override
+            public void update(long done, long total) {
+                setProgress(total <= 0 ? 0 : (int) Math.min(100, done * 100 / total));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return ReportWorker.this.isCancelled();
+            }
+        });
+    }
+
+    @Override
+    protected void done() {
+        dialog.dispose();
+        if (isCancelled())
+            return;
+
+        try {
+            onResult.accept(get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.out.println("[ReportWorker] " + title + " failed: " + cause);
+            JOptionPane.showMessageDialog(parent,
+                    "Error generating " + title + ": " + cause.getMessage(),
+                    title, JOptionPane.ERROR_MESSAGE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private JDialog createDialog() {
+        Window owner = parent != null ? SwingUtilities.getWindowAncestor(parent) : null;
+        JDialog dialog = new JDialog(owner, title, Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                cancel(true);
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(0, 12));
+        panel.setBackground(ThemeColors.BG_DARK);
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 24, 20, 24));
+
+        JLabel label = new JLabel("Generating " + title + "...");
+        label.setFont(ThemeColors.FONT_REGULAR);
+        label.setForeground(ThemeColors.TEXT_PRIMARY);
+        panel.add(label, BorderLayout.NORTH);
+
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setPreferredSize(new Dimension(320, 22));
+        panel.add(progressBar, BorderLayout.CENTER);
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName()))
+                progressBar.setValue((Integer) e.getNewValue());
+        });
+
+        GlowButton cancelBtn = new GlowButton("Cancel", ThemeColors.STATUS_WARNING);
+        cancelBtn.addActionListener(e -> cancel(true));
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttons.setOpaque(false);
+        buttons.add(cancelBtn);
+        panel.add(buttons, BorderLayout.SOUTH);
+
+        dialog.setContentPane(panel);
+        dialog.pack();
+        dialog.setLocationRelativeTo(parent);
+        return dialog;
+    }
+}
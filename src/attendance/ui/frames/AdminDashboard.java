@@ -1,8 +1,12 @@
 package attendance.ui.frames;
 
+import attendance.database.CsvExporter;
+import attendance.database.DataChangeEvent;
+import attendance.database.DataChangeListener;
 import attendance.database.DataStore;
 import attendance.models.*;
 import attendance.services.AuthService;
+import attendance.services.DefaultersEngine;
 import attendance.ui.components.*;
 import attendance.ui.panels.SettingsPanel;
 import attendance.ui.theme.ThemeColors;
@@ -11,6 +15,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Admin Dashboard with full control panel access
@@ -20,10 +25,50 @@ public class AdminDashboard extends JFrame {
     private JPanel contentPanel;
     private CardLayout cardLayout;
     private DataStore dataStore;
+    private final Map<String, LazyPanel> panels = new LinkedHashMap<>();
+    private String currentPanel = "DASHBOARD";
+    private final DataChangeListener changeListener = this::onDataChanged;
+
+    // Widgets patched in place by change events; they belong to the last built panel
+    private DashboardCard studentsCard;
+    private DashboardCard teachersCard;
+    private DashboardCard attendanceCard;
+    private DashboardCard belowThresholdCard;
+    private JTable studentSubjectTable;
+    private final Map<Long, List<Integer>> studentSubjectRows = new HashMap<>();
+
+    /**
+     * A content panel that is built on first visit and dropped when data it shows changes
+     */
+    private static class LazyPanel {
+        final Supplier<JPanel> factory;
+        final Set<Class<?>> dependsOn;
+        JPanel panel;
+
+        LazyPanel(Supplier<JPanel> factory, Class<?>... dependsOn) {
+            this.factory = factory;
+            this.dependsOn = Set.of(dependsOn);
+        }
+
+        boolean dependsOnAny(Class<?>... kinds) {
+            for (Class<?> kind : kinds) {
+                if (dependsOn.contains(kind))
+                    return true;
+            }
+            return false;
+        }
+    }
 
     public AdminDashboard() {
         dataStore = DataStore.getInstance();
         initializeUI();
+        dataStore.addChangeListener(changeListener);
+    }
+
+    @Override
+    public void dispose() {
+        dataStore.removeChangeListener(changeListener);
+        super.dispose();
     }
 
     private void initializeUI() {
@@ -54,7 +99,7 @@ public class AdminDashboard extends JFrame {
             if ("LOGOUT".equals(command)) {
                 performLogout();
             } else {
-                cardLayout.show(contentPanel, command);
+                showPanel(command);
             }
         });
 
@@ -65,15 +110,21 @@ public class AdminDashboard extends JFrame {
         contentPanel = new JPanel(cardLayout);
         contentPanel.setBackground(ThemeColors.BG_DARK);
 
-        // Add panels
-        contentPanel.add(createDashboardPanel(), "DASHBOARD");
-        contentPanel.add(createDepartmentPanel(), "DEPARTMENTS");
-        contentPanel.add(createCoursesPanel(), "COURSES");
-        contentPanel.add(createAllotmentsPanel(), "ALLOTMENTS");
-        contentPanel.add(createUsersPanel(), "USERS");
-        contentPanel.add(createRulesPanel(), "RULES");
-        contentPanel.add(createReportsPanel(), "REPORTS");
-        contentPanel.add(new SettingsPanel(this), "SETTINGS");
+        // Panels are built on first visit; each lists the data it shows. Stat cards and
+        // attendance cells are patched in place instead (see onDataChanged)
+        panels.put("DASHBOARD", new LazyPanel(this::createDashboardPanel, Department.class));
+        panels.put("DEPARTMENTS", new LazyPanel(this::createDepartmentPanel, Department.class));
+        panels.put("COURSES", new LazyPanel(this::createCoursesPanel,
+                Department.class, Course.class, Subject.class, Section.class, Student.class));
+        panels.put("ALLOTMENTS", new LazyPanel(this::createAllotmentsPanel,
+                Department.class, Course.class, Subject.class, Section.class, Student.class, Teacher.class,
+                TeacherSubject.class, StudentSubject.class));
+        panels.put("USERS", new LazyPanel(this::createUsersPanel,
+                User.class, Department.class, Section.class, Student.class, Teacher.class));
+        panels.put("RULES", new LazyPanel(this::createRulesPanel));
+        panels.put("REPORTS", new LazyPanel(this::createReportsPanel));
+        panels.put("SETTINGS", new LazyPanel(() -> new SettingsPanel(this)));
+        showPanel(currentPanel);
 
         mainPanel.add(contentPanel, BorderLayout.CENTER);
 
@@ -96,17 +147,19 @@ public class AdminDashboard extends JFrame {
         cardsPanel.setOpaque(false);
         cardsPanel.setBorder(BorderFactory.createEmptyBorder(30, 0, 0, 0));
 
-        cardsPanel.add(new DashboardCard(
+        studentsCard = new DashboardCard(
                 "Total Students",
                 String.valueOf(dataStore.getTotalStudents()),
                 "\uD83D\uDC68\u200D\uD83C\uDF93",
-                ThemeColors.ACCENT_CYAN));
+                ThemeColors.ACCENT_CYAN);
+        cardsPanel.add(studentsCard);
 
-        cardsPanel.add(new DashboardCard(
+        teachersCard = new DashboardCard(
                 "Total Teachers",
                 String.valueOf(dataStore.getTotalTeachers()),
                 "\uD83D\uDC68\u200D\uD83C\uDFEB",
-                ThemeColors.ACCENT_PURPLE));
+                ThemeColors.ACCENT_PURPLE);
+        cardsPanel.add(teachersCard);
 
         cardsPanel.add(new DashboardCard(
                 "Departments",
@@ -114,17 +167,19 @@ public class AdminDashboard extends JFrame {
                 "\uD83C\uDFDB",
                 ThemeColors.ACCENT_BLUE));
 
-        cardsPanel.add(new DashboardCard(
+        attendanceCard = new DashboardCard(
                 "Avg Attendance",
                 String.format("%.1f%%", dataStore.getOverallAttendancePercentage()),
                 "\uD83D\uDCCA",
-                ThemeColors.ACCENT_GREEN));
+                ThemeColors.ACCENT_GREEN);
+        cardsPanel.add(attendanceCard);
 
-        cardsPanel.add(new DashboardCard(
+        belowThresholdCard = new DashboardCard(
                 "Below Threshold",
-                String.valueOf(dataStore.getStudentsBelowThreshold()),
+                String.valueOf(countStudentsBelowThreshold()),
                 "\u26A0",
-                ThemeColors.STATUS_WARNING));
+                ThemeColors.STATUS_WARNING);
+        cardsPanel.add(belowThresholdCard);
 
         // Main content with cards and charts
         JPanel mainContent = new JPanel(new BorderLayout());
@@ -243,8 +298,6 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this,
                     "Department '" + dept.getName() + "' deleted successfully!",
                     "Deleted", JOptionPane.INFORMATION_MESSAGE);
-
-            refreshAndShow("DEPARTMENTS");
         }
     }
 
@@ -346,7 +399,7 @@ public class AdminDashboard extends JFrame {
         for (int i = 0; i < sections.size(); i++) {
             Section sec = sections.get(i);
             Course c = dataStore.getCourseById(sec.getCourseId());
-            int studentCount = dataStore.getStudentsBySection(sec.getId()).size();
+            int studentCount = dataStore.countStudentsBySection(sec.getId());
             sectionData[i] = new Object[] { sec.getId(), c != null ? c.getName() : "-", sec.getName(),
                     sec.getAcademicYear(), sec.getSemester(), studentCount, "Delete" };
         }
@@ -434,7 +487,6 @@ public class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this,
                         "Section '" + newSection.getName() + "' added successfully!",
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshAndShow("COURSES");
             }
         }
     }
@@ -467,8 +519,6 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this,
                     "Section '" + section.getName() + "' deleted successfully!",
                     "Deleted", JOptionPane.INFORMATION_MESSAGE);
-
-            refreshAndShow("COURSES");
         }
     }
 
@@ -500,8 +550,6 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this,
                     "Course '" + course.getName() + "' deleted successfully!",
                     "Deleted", JOptionPane.INFORMATION_MESSAGE);
-
-            refreshAndShow("COURSES");
         }
     }
 
@@ -523,8 +571,6 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this,
                     "Subject '" + subject.getName() + "' deleted successfully!",
                     "Deleted", JOptionPane.INFORMATION_MESSAGE);
-
-            refreshAndShow("COURSES");
         }
     }
 
@@ -656,8 +702,6 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this,
                     "Teacher '" + teacher.getName() + "' deleted successfully!",
                     "Deleted", JOptionPane.INFORMATION_MESSAGE);
-
-            refreshAndShow("USERS");
         }
     }
 
@@ -681,8 +725,6 @@ public class AdminDashboard extends JFrame {
             JOptionPane.showMessageDialog(this,
                     "Student '" + student.getName() + "' deleted successfully!",
                     "Deleted", JOptionPane.INFORMATION_MESSAGE);
-
-            refreshAndShow("USERS");
         }
     }
 
@@ -780,6 +822,7 @@ public class AdminDashboard extends JFrame {
         // Get all students with their subjects based on section
         List<Student> students = dataStore.getAllStudents();
         java.util.List<Object[]> rows = new java.util.ArrayList<>();
+        studentSubjectRows.clear();
 
         for (Student student : students) {
             Section section = dataStore.getSectionById(student.getSectionId());
@@ -791,6 +834,8 @@ public class AdminDashboard extends JFrame {
                     if (subject.getSemester() == section.getSemester()) {
                         double attendance = dataStore.calculateStudentSubjectAttendance(student.getId(),
                                 subject.getId());
+                        studentSubjectRows.computeIfAbsent(pairKey(student.getId(), subject.getId()),
+                                k -> new ArrayList<>()).add(rows.size());
                         rows.add(new Object[] {
                                 student.getName(),
                                 student.getRollNumber(),
@@ -809,6 +854,7 @@ public class AdminDashboard extends JFrame {
         Object[][] data = rows.toArray(new Object[0][]);
 
         JTable table = createStyledTable(columns, data);
+        studentSubjectTable = table;
         panel.add(new JScrollPane(table), BorderLayout.CENTER);
 
         // Info label
@@ -876,7 +922,6 @@ public class AdminDashboard extends JFrame {
                         "Assigned " + teacher.getName() + " to teach " + subject.getName() +
                                 " in Section " + section.getName(),
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshAndShow("ALLOTMENTS");
             }
         }
     }
@@ -901,7 +946,6 @@ public class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this,
                         "Assignment removed successfully!",
                         "Removed", JOptionPane.INFORMATION_MESSAGE);
-                refreshAndShow("ALLOTMENTS");
             }
         }
     }
@@ -947,7 +991,6 @@ public class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this,
                         "Assigned " + student.getName() + " to " + subject.getName(),
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshAndShow("ALLOTMENTS");
             }
         }
     }
@@ -1119,134 +1162,114 @@ public class AdminDashboard extends JFrame {
     }
 
     private void generateDepartmentReport() {
-        StringBuilder report = new StringBuilder();
-        report.append("=== DEPARTMENT ATTENDANCE REPORT ===\n");
-        report.append("Generated: ").append(java.time.LocalDateTime.now()).append("\n\n");
-
-        for (Department dept : dataStore.getAllDepartments()) {
-            report.append("Department: ").append(dept.getName()).append(" (").append(dept.getCode()).append(")\n");
-
-            List<Teacher> teachers = dataStore.getTeachersByDepartment(dept.getId());
-            report.append("  Teachers: ").append(teachers.size()).append("\n");
-
-            List<Course> courses = dataStore.getCoursesByDepartment(dept.getId());
-            int totalStudents = 0;
-            for (Course course : courses) {
-                for (Section section : dataStore.getSectionsByCourse(course.getId())) {
-                    totalStudents += dataStore.getStudentsBySection(section.getId()).size();
+        ReportWorker.run(this, "Department Report", (snapshot, progress) -> {
+            StringBuilder report = new StringBuilder();
+            report.append("=== DEPARTMENT ATTENDANCE REPORT ===\n");
+            report.append("Generated: ").append(java.time.LocalDateTime.now()).append("\n\n");
+
+            List<Department> departments = snapshot.getAllDepartments();
+            for (int i = 0; i < departments.size() && !progress.isCancelled(); i++) {
+                Department dept = departments.get(i);
+                report.append("Department: ").append(dept.getName()).append(" (").append(dept.getCode()).append(")\n");
+
+                List<Teacher> teachers = snapshot.getTeachersByDepartment(dept.getId());
+                report.append("  Teachers: ").append(teachers.size()).append("\n");
+
+                List<Course> courses = snapshot.getCoursesByDepartment(dept.getId());
+                int totalStudents = 0;
+                for (Course course : courses) {
+                    for (Section section : snapshot.getSectionsByCourse(course.getId())) {
+                        totalStudents += snapshot.getStudentsBySection(section.getId()).size();
+                    }
                 }
+                report.append("  Courses: ").append(courses.size()).append("\n");
+                report.append("  Students: ").append(totalStudents).append("\n");
+                report.append("  ---\n");
+                progress.update(i + 1, departments.size());
             }
-            report.append("  Courses: ").append(courses.size()).append("\n");
-            report.append("  Students: ").append(totalStudents).append("\n");
-            report.append("  ---\n");
-        }
-
-        report.append("\nOverall Attendance: ")
-                .append(String.format("%.1f%%", dataStore.getOverallAttendancePercentage()));
 
-        showReportDialog("Department Report", report.toString());
+            report.append("\nOverall Attendance: ")
+                    .append(String.format("%.1f%%", snapshot.getOverallAttendancePercentage()));
+            return report.toString();
+        }, report -> showReportDialog("Department Report", report));
     }
 
     private void generateSubjectReport() {
-        StringBuilder report = new StringBuilder();
-        report.append("=== SUBJECT-WISE ATTENDANCE REPORT ===\n");
-        report.append("Generated: ").append(java.time.LocalDateTime.now()).append("\n\n");
-
-        for (Subject subject : dataStore.getAllSubjects()) {
-            Course course = dataStore.getCourseById(subject.getCourseId());
-            report.append("Subject: ").append(subject.getName()).append(" (").append(subject.getCode()).append(")\n");
-            report.append("  Course: ").append(course != null ? course.getName() : "-").append("\n");
-            report.append("  Semester: ").append(subject.getSemester()).append("\n");
-            report.append("  Credits: ").append(subject.getCredits()).append("\n");
-
-            List<Attendance> records = dataStore.getAttendanceBySubject(subject.getId());
-            if (!records.isEmpty()) {
-                long presentCount = records.stream()
-                        .filter(a -> a.getStatus() == AttendanceStatus.PRESENT
-                                || a.getStatus() == AttendanceStatus.LATE)
-                        .count();
-                double percentage = (presentCount * 100.0) / records.size();
-                report.append("  Attendance: ").append(String.format("%.1f%%", percentage)).append(" (")
-                        .append(presentCount).append("/").append(records.size()).append(")\n");
-            } else {
-                report.append("  Attendance: No records\n");
+        ReportWorker.run(this, "Subject Report", (snapshot, progress) -> {
+            StringBuilder report = new StringBuilder();
+            report.append("=== SUBJECT-WISE ATTENDANCE REPORT ===\n");
+            report.append("Generated: ").append(java.time.LocalDateTime.now()).append("\n\n");
+
+            List<Subject> subjects = snapshot.getAllSubjects();
+            for (int i = 0; i < subjects.size() && !progress.isCancelled(); i++) {
+                Subject subject = subjects.get(i);
+                Course course = snapshot.getCourseById(subject.getCourseId());
+                report.append("Subject: ").append(subject.getName()).append(" (").append(subject.getCode()).append(")\n");
+                report.append("  Course: ").append(course != null ? course.getName() : "-").append("\n");
+                report.append("  Semester: ").append(subject.getSemester()).append("\n");
+                report.append("  Credits: ").append(subject.getCredits()).append("\n");
+
+                int[] counts = snapshot.getSubjectAttendanceCounts(subject.getId());
+                if (counts[1] > 0) {
+                    double percentage = (counts[0] * 100.0) / counts[1];
+                    report.append("  Attendance: ").append(String.format("%.1f%%", percentage)).append(" (")
+                            .append(counts[0]).append("/").append(counts[1]).append(")\n");
+                } else {
+                    report.append("  Attendance: No records\n");
+                }
+                report.append("  ---\n");
+                progress.update(i + 1, subjects.size());
             }
-            report.append("  ---\n");
-        }
-
-        showReportDialog("Subject Report", report.toString());
+            return report.toString();
+        }, report -> showReportDialog("Subject Report", report));
     }
 
     private void generateDetentionReport() {
-        StringBuilder report = new StringBuilder();
-        report.append("=== DETENTION LIST (Students Below ").append(dataStore.getAttendanceRule().getMinPercentage())
-                .append("%) ===\n");
-        report.append("Generated: ").append(java.time.LocalDateTime.now()).append("\n\n");
-
-        double threshold = dataStore.getAttendanceRule().getMinPercentage();
-        int count = 0;
-
-        for (Student student : dataStore.getAllStudents()) {
-            double percentage = dataStore.calculateStudentAttendance(student.getId());
-            if (percentage < threshold && percentage > 0) {
-                count++;
-                Section section = dataStore.getSectionById(student.getSectionId());
-                report.append(count).append(". ").append(student.getName()).append("\n");
+        ReportWorker.run(this, "Detention List", (snapshot, progress) -> {
+            AttendanceRule rule = snapshot.getAttendanceRule();
+            DefaultersEngine defaulters = new DefaultersEngine(rule);
+
+            StringBuilder report = new StringBuilder();
+            report.append("=== DETENTION LIST (Students Below ").append(rule.getMinPercentage()).append("%) ===\n");
+            report.append("Generated: ").append(java.time.LocalDateTime.now()).append("\n\n");
+
+            List<AttendanceCount> atRisk = defaulters.findDefaulters(snapshot.getStudentCounts()).getAll();
+            for (int i = 0; i < atRisk.size() && !progress.isCancelled(); i++) {
+                AttendanceCount counted = atRisk.get(i);
+                Student student = snapshot.getStudentById(counted.getStudentId());
+                Section section = snapshot.getSectionById(student.getSectionId());
+                boolean critical = defaulters.classify(counted) == DefaultersEngine.Level.CRITICAL;
+                report.append(i + 1).append(". ").append(student.getName())
+                        .append(critical ? "  [CRITICAL]" : "  [WARNING]").append("\n");
                 report.append("   Roll No: ").append(student.getRollNumber()).append("\n");
                 report.append("   Section: ").append(section != null ? section.getName() : "-").append("\n");
-                report.append("   Attendance: ").append(String.format("%.1f%%", percentage)).append(" (Below ")
-                        .append(threshold).append("%)\n");
+                report.append("   Attendance: ").append(String.format("%.1f%%", counted.getPercentage()))
+                        .append(" (Below ").append(critical ? rule.getDetentionThreshold() : rule.getMinPercentage())
+                        .append("%)\n");
                 report.append("   ---\n");
+                progress.update(i + 1, atRisk.size());
             }
-        }
-
-        if (count == 0) {
-            report.append("No students below the attendance threshold.\n");
-        } else {
-            report.append("\nTotal Students at Risk: ").append(count);
-        }
 
-        showReportDialog("Detention List", report.toString());
+            if (atRisk.isEmpty()) {
+                report.append("No students below the attendance threshold.\n");
+            } else {
+                report.append("\nTotal Students at Risk: ").append(atRisk.size());
+            }
+            return report.toString();
+        }, report -> showReportDialog("Detention List", report));
     }
 
     private void exportAllData() {
-        try {
+        ReportWorker.run(this, "Data Export", (snapshot, progress) -> {
             String filename = "attendance_export_" + java.time.LocalDate.now() + ".csv";
             java.io.File file = new java.io.File("reports/" + filename);
             file.getParentFile().mkdirs();
 
-            try (java.io.PrintWriter writer = new java.io.PrintWriter(file)) {
-                // Header
-                writer.println("Student Name,Roll No,Section,Subject,Date,Status,Attendance %");
-
-                // Data
-                for (Student student : dataStore.getAllStudents()) {
-                    Section section = dataStore.getSectionById(student.getSectionId());
-                    double overallPercentage = dataStore.calculateStudentAttendance(student.getId());
-
-                    for (Attendance att : dataStore.getAttendanceByStudent(student.getId())) {
-                        Subject subject = dataStore.getSubjectById(att.getSubjectId());
-                        writer.println(String.format("%s,%s,%s,%s,%s,%s,%.1f%%",
-                                student.getName(),
-                                student.getRollNumber(),
-                                section != null ? section.getName() : "-",
-                                subject != null ? subject.getName() : "-",
-                                att.getDate(),
-                                att.getStatus(),
-                                overallPercentage));
-                    }
-                }
-            }
-
-            JOptionPane.showMessageDialog(this,
-                    "Data exported successfully!\n\nFile: " + file.getAbsolutePath(),
-                    "Export Complete", JOptionPane.INFORMATION_MESSAGE);
-
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this,
-                    "Error exporting data: " + e.getMessage(),
-                    "Export Error", JOptionPane.ERROR_MESSAGE);
-        }
+            CsvExporter.exportAttendance(snapshot, file.toPath(), progress);
+            return file;
+        }, file -> JOptionPane.showMessageDialog(this,
+                "Data exported successfully!\n\nFile: " + file.getAbsolutePath(),
+                "Export Complete", JOptionPane.INFORMATION_MESSAGE));
     }
 
     private void showReportDialog(String title, String content) {
@@ -1299,7 +1322,6 @@ public class AdminDashboard extends JFrame {
         int result = JOptionPane.showConfirmDialog(this, panel, "Add Department", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
             dataStore.addDepartment(nameField.getText(), codeField.getText(), descField.getText());
-            refreshContent();
         }
     }
 
@@ -1370,7 +1392,6 @@ public class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this,
                         "Course '" + newCourse.getName() + "' added successfully!",
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshContent();
             }
         }
     }
@@ -1452,7 +1473,6 @@ public class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this,
                         "Subject '" + newSubject.getName() + "' added successfully!",
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshContent();
             }
         }
     }
@@ -1544,7 +1564,6 @@ public class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this,
                         "Teacher '" + name + "' added successfully!\nUsername: " + username,
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshContent();
             }
         }
     }
@@ -1636,6 +1655,12 @@ public class AdminDashboard extends JFrame {
                 return;
             }
 
+            // Check if roll number exists
+            if (dataStore.getStudentByRollNumber(rollNo) != null) {
+                JOptionPane.showMessageDialog(this, "Roll number already exists!", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
             Section selectedSection = (Section) sectionCombo.getSelectedItem();
             if (selectedSection != null) {
                 // Create user account
@@ -1646,52 +1671,75 @@ public class AdminDashboard extends JFrame {
                 JOptionPane.showMessageDialog(this,
                         "Student '" + name + "' added successfully!\nRoll No: " + rollNo + "\nUsername: " + username,
                         "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshContent();
             }
         }
     }
 
-    private void refreshContent() {
-        // Get current panel name
-        String currentPanel = "DASHBOARD";
+    /**
+     * Apply a batch of store changes: rebuild the panels that show changed entities and
+     * patch stat cards and attendance cells in place
+     */
+    private void onDataChanged(List<DataChangeEvent> events) {
+        Set<Class<?>> kinds = new HashSet<>();
+        for (DataChangeEvent event : events) {
+            kinds.add(event.type());
+            if (event instanceof DataChangeEvent.AttendanceChanged changed)
+                updateStudentSubjectRow(changed.studentId(), changed.subjectId());
+        }
+        dataChanged(kinds.toArray(new Class<?>[0]));
+        updateStatCards();
+    }
 
-        // Remove all panels and rebuild them with fresh data
-        contentPanel.removeAll();
+    private void updateStatCards() {
+        if (studentsCard == null)
+            return;
+        studentsCard.setValue(String.valueOf(dataStore.getTotalStudents()));
+        teachersCard.setValue(String.valueOf(dataStore.getTotalTeachers()));
+        attendanceCard.setValue(String.format("%.1f%%", dataStore.getOverallAttendancePercentage()));
+        belowThresholdCard.setValue(String.valueOf(countStudentsBelowThreshold()));
+    }
 
-        // Rebuild all panels with current data
-        contentPanel.add(createDashboardPanel(), "DASHBOARD");
-        contentPanel.add(createDepartmentPanel(), "DEPARTMENTS");
-        contentPanel.add(createCoursesPanel(), "COURSES");
-        contentPanel.add(createAllotmentsPanel(), "ALLOTMENTS");
-        contentPanel.add(createUsersPanel(), "USERS");
-        contentPanel.add(createRulesPanel(), "RULES");
-        contentPanel.add(createReportsPanel(), "REPORTS");
-        contentPanel.add(new SettingsPanel(this), "SETTINGS");
+    private int countStudentsBelowThreshold() {
+        return new DefaultersEngine(dataStore.getAttendanceRule()).findDefaulters(dataStore.getStudentCounts()).size();
+    }
 
-        // Show current panel
-        cardLayout.show(contentPanel, currentPanel);
+    private void updateStudentSubjectRow(int studentId, int subjectId) {
+        List<Integer> rows = studentSubjectRows.get(pairKey(studentId, subjectId));
+        if (rows == null || studentSubjectTable == null)
+            return;
+        String attendance = String.format("%.1f%%", dataStore.calculateStudentSubjectAttendance(studentId, subjectId));
+        for (int row : rows)
+            studentSubjectTable.setValueAt(attendance, row, 6);
+    }
 
-        // Force repaint
-        contentPanel.revalidate();
-        contentPanel.repaint();
+    private static long pairKey(int studentId, int subjectId) {
+        return ((long) studentId << 32) | (subjectId & 0xFFFFFFFFL);
+    }
+
+    private void showPanel(String name) {
+        LazyPanel lazy = panels.get(name);
+        if (lazy == null)
+            return;
+        if (lazy.panel == null) {
+            lazy.panel = lazy.factory.get();
+            contentPanel.add(lazy.panel, name);
+        }
+        currentPanel = name;
+        cardLayout.show(contentPanel, name);
     }
 
-    private void refreshAndShow(String panelName) {
-        // Remove all panels and rebuild them with fresh data
-        contentPanel.removeAll();
-
-        // Rebuild all panels with current data
-        contentPanel.add(createDashboardPanel(), "DASHBOARD");
-        contentPanel.add(createDepartmentPanel(), "DEPARTMENTS");
-        contentPanel.add(createCoursesPanel(), "COURSES");
-        contentPanel.add(createAllotmentsPanel(), "ALLOTMENTS");
-        contentPanel.add(createUsersPanel(), "USERS");
-        contentPanel.add(createRulesPanel(), "RULES");
-        contentPanel.add(createReportsPanel(), "REPORTS");
-        contentPanel.add(new SettingsPanel(this), "SETTINGS");
-
-        // Show requested panel
-        cardLayout.show(contentPanel, panelName);
+    /**
+     * Drop the panels that show any of the changed kinds of data. The visible panel
+     * is rebuilt now; the others are rebuilt when next visited.
+     */
+    private void dataChanged(Class<?>... kinds) {
+        for (LazyPanel lazy : panels.values()) {
+            if (lazy.panel != null && lazy.dependsOnAny(kinds)) {
+                contentPanel.remove(lazy.panel);
+                lazy.panel = null;
+            }
+        }
+        showPanel(currentPanel);
 
         // Force repaint
         contentPanel.revalidate();
@@ -1,8 +1,11 @@
 package attendance.ui.frames;
 
+import attendance.database.DataChangeEvent;
+import attendance.database.DataChangeListener;
 import attendance.database.DataStore;
 import attendance.models.*;
 import attendance.services.AuthService;
+import attendance.services.DefaultersEngine;
 import attendance.ui.components.*;
 import attendance.ui.panels.SettingsPanel;
 import attendance.ui.theme.ThemeColors;
@@ -19,11 +22,21 @@ import java.util.List;
  * Teacher Dashboard for attendance marking and class management
  */
 public class TeacherDashboard extends JFrame {
+
     private SidebarPanel sidebar;
     private JPanel contentPanel;
     private CardLayout cardLayout;
     private DataStore dataStore;
     private Teacher currentTeacher;
+    private final DataChangeListener changeListener = this::onDataChanged;
+
+    // Widgets patched in place by change events; they belong to the last built panels
+    private DashboardCard pendingTodayCard;
+    private JTable scheduleTable;
+    private List<TeacherSubject> scheduleAssignments = List.of();
+    private JTable classesTable;
+    private List<TeacherSubject> classAssignments = List.of();
+    private AttendanceHistoryModel historyModel;
 
     public TeacherDashboard() {
         dataStore = DataStore.getInstance();
@@ -32,6 +45,13 @@ public class TeacherDashboard extends JFrame {
             currentTeacher = dataStore.getTeacherByUserId(currentUser.getId());
         }
         initializeUI();
+        dataStore.addChangeListener(changeListener);
+    }
+
+    @Override
+    public void dispose() {
+        dataStore.removeChangeListener(changeListener);
+        super.dispose();
     }
 
     private void initializeUI() {
@@ -127,20 +147,12 @@ public class TeacherDashboard extends JFrame {
                 "\uD83D\uDCC5",
                 ThemeColors.ACCENT_BLUE));
 
-        // Calculate pending classes for today
-        int pendingCount = 0;
-        for (TeacherSubject ts : assignments) {
-            boolean markedToday = dataStore.getAttendanceBySubject(ts.getSubjectId()).stream()
-                    .anyMatch(a -> a.getDate().equals(LocalDate.now()));
-            if (!markedToday)
-                pendingCount++;
-        }
-
-        cardsPanel.add(new DashboardCard(
+        pendingTodayCard = new DashboardCard(
                 "Pending Today",
-                String.valueOf(pendingCount),
+                String.valueOf(countPendingToday(assignments)),
                 "\u26A0",
-                ThemeColors.STATUS_WARNING));
+                ThemeColors.STATUS_WARNING);
+        cardsPanel.add(pendingTodayCard);
 
         mainContent.add(cardsPanel, BorderLayout.NORTH);
 
@@ -174,8 +186,7 @@ public class TeacherDashboard extends JFrame {
             String time = period <= times.length ? times[period - 1] : "-";
 
             // Check if attendance was marked today for this subject/section
-            boolean markedToday = dataStore.getAttendanceBySubject(ts.getSubjectId()).stream()
-                    .anyMatch(a -> a.getDate().equals(LocalDate.now()));
+            boolean markedToday = isMarkedToday(ts.getSubjectId());
 
             scheduleRows.add(new Object[] {
                     String.valueOf(period++),
@@ -190,7 +201,8 @@ public class TeacherDashboard extends JFrame {
                 ? new Object[][] { { "", "No subjects assigned", "", "", "" } }
                 : scheduleRows.toArray(new Object[0][]);
 
-        JTable scheduleTable = createStyledTable(columns, scheduleData);
+        scheduleTable = createStyledTable(columns, scheduleData);
+        scheduleAssignments = teacherAssignments;
         JScrollPane scrollPane = new JScrollPane(scheduleTable);
         scrollPane.setOpaque(false);
         scrollPane.getViewport().setBackground(ThemeColors.BG_MEDIUM);
@@ -426,6 +438,7 @@ public class TeacherDashboard extends JFrame {
 
             int presentCount = 0;
             int absentCount = 0;
+            List<AttendanceEntry> entries = new ArrayList<>();
 
             for (int i = 0; i < model.getRowCount(); i++) {
                 String rollNumber = (String) model.getValueAt(i, 1);
@@ -445,25 +458,27 @@ public class TeacherDashboard extends JFrame {
                     presentCount++;
                 }
 
-                // Find student and add attendance record
+                // Find student and queue attendance record
                 Student student = dataStore.getStudentByRollNumber(rollNumber);
                 if (student != null) {
-                    dataStore.addAttendance(
+                    entries.add(new AttendanceEntry(
                             student.getId(),
                             selectedSubject.getId(),
                             date,
                             period,
                             status,
                             markedBy,
-                            lateEntry);
+                            lateEntry));
                 }
             }
 
-            // Save to disk
-            dataStore.saveData();
+            // Record the whole class in one step (saved in the background)
+            List<AttendanceEntry.Result> results = dataStore.addAttendanceBatch(entries);
+            long updatedCount = results.stream().filter(r -> r == AttendanceEntry.Result.UPDATED).count();
 
             JOptionPane.showMessageDialog(this,
-                    "Attendance submitted successfully!\n\nPresent: " + presentCount + "\nAbsent: " + absentCount,
+                    "Attendance submitted successfully!\n\nPresent: " + presentCount + "\nAbsent: " + absentCount
+                            + "\n\nNew records: " + (results.size() - updatedCount) + "\nUpdated: " + updatedCount,
                     "Success",
                     JOptionPane.INFORMATION_MESSAGE);
         });
@@ -504,7 +519,8 @@ public class TeacherDashboard extends JFrame {
 
         JComboBox<String> studentCombo = new JComboBox<>();
         studentCombo.addItem("All Students");
-        for (Student s : dataStore.getAllStudents()) {
+        List<Student> comboStudents = dataStore.getAllStudents();
+        for (Student s : comboStudents) {
             studentCombo.addItem(s.getRollNumber() + " - " + s.getName());
         }
         studentCombo.setPreferredSize(new Dimension(250, 35));
@@ -529,25 +545,10 @@ public class TeacherDashboard extends JFrame {
         GlowButton searchBtn = new GlowButton("Search", ThemeColors.ACCENT_CYAN);
         filterPanel.add(searchBtn);
 
-        // Attendance records table - load from DataStore
-        String[] columns = { "Date", "Student", "Subject", "Period", "Status", "Action" };
-
-        // Use DefaultTableModel for dynamic updates
-        DefaultTableModel tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Attendance records table - newest first, loaded a page at a time as it scrolls
+        historyModel = new AttendanceHistoryModel(dataStore);
 
-        // Get recent attendance records and store for reference
-        final List<Attendance>[] currentRecords = new List[] { new ArrayList<>() };
-
-        // Load initial data
         Runnable loadTableData = () -> {
-            tableModel.setRowCount(0);
-            currentRecords[0].clear();
-
             LocalDate fromDate, toDate;
             try {
                 fromDate = LocalDate.parse(fromField.getText());
@@ -557,47 +558,10 @@ public class TeacherDashboard extends JFrame {
                 toDate = LocalDate.now();
             }
 
-            String selectedStudent = (String) studentCombo.getSelectedItem();
-
-            List<Attendance> allRecords = dataStore.getAllAttendance();
-            final LocalDate finalFromDate = fromDate;
-            final LocalDate finalToDate = toDate;
-
-            List<Attendance> filteredRecords = allRecords.stream()
-                    .filter(a -> !a.getDate().isBefore(finalFromDate) && !a.getDate().isAfter(finalToDate))
-                    .filter(a -> {
-                        if ("All Students".equals(selectedStudent))
-                            return true;
-                        Student student = dataStore.getStudentById(a.getStudentId());
-                        if (student == null)
-                            return false;
-                        String studentStr = student.getRollNumber() + " - " + student.getName();
-                        return studentStr.equals(selectedStudent);
-                    })
-                    .sorted((a, b) -> b.getDate().compareTo(a.getDate()))
-                    .limit(50)
-                    .toList();
-
-            currentRecords[0] = new ArrayList<>(filteredRecords);
-
-            for (Attendance a : filteredRecords) {
-                String studentName = "-";
-                for (Student s : dataStore.getAllStudents()) {
-                    if (s.getId() == a.getStudentId()) {
-                        studentName = s.getName();
-                        break;
-                    }
-                }
-                Subject subject = dataStore.getSubjectById(a.getSubjectId());
-                tableModel.addRow(new Object[] {
-                        a.getDate().toString(),
-                        studentName,
-                        subject != null ? subject.getName() : "-",
-                        String.valueOf(a.getPeriod()),
-                        a.getStatus().toString(),
-                        "Edit"
-                });
-            }
+            int selected = studentCombo.getSelectedIndex();
+            int studentId = selected > 0 ? comboStudents.get(selected - 1).getId() : 0;
+
+            historyModel.setFilter(new AttendanceFilter(studentId, 0, fromDate, toDate));
         };
 
         // Load initial data
@@ -606,7 +570,7 @@ public class TeacherDashboard extends JFrame {
         // Search button action
         searchBtn.addActionListener(e -> loadTableData.run());
 
-        JTable table = new JTable(tableModel);
+        JTable table = new JTable(historyModel);
         table.setBackground(ThemeColors.BG_MEDIUM);
         table.setForeground(ThemeColors.TEXT_PRIMARY);
         table.setFont(ThemeColors.FONT_REGULAR);
@@ -626,10 +590,10 @@ public class TeacherDashboard extends JFrame {
             public void mouseClicked(java.awt.event.MouseEvent e) {
                 int row = table.rowAtPoint(e.getPoint());
                 int col = table.columnAtPoint(e.getPoint());
-                if (col == 5 && row >= 0 && row < currentRecords[0].size()) { // Edit column
-                    Attendance record = currentRecords[0].get(row);
-                    showEditAttendanceDialog(record);
-                    loadTableData.run(); // Refresh table after edit
+                if (col == AttendanceHistoryModel.ACTION_COLUMN && row >= 0) {
+                    Attendance record = historyModel.getAttendance(row);
+                    if (record != null)
+                        showEditAttendanceDialog(record); // the row is reloaded by the change event
                 }
             }
         });
@@ -637,6 +601,12 @@ public class TeacherDashboard extends JFrame {
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.setOpaque(false);
         scrollPane.getViewport().setBackground(ThemeColors.BG_MEDIUM);
+        // Fetch the next page as the last loaded rows come into view
+        scrollPane.getViewport().addChangeListener(e -> {
+            Rectangle view = scrollPane.getViewport().getViewRect();
+            int last = table.rowAtPoint(new Point(0, view.y + view.height - 1));
+            historyModel.ensureLoaded(last >= 0 ? last : table.getRowCount() - 1);
+        });
 
         JPanel tablePanel = new JPanel(new BorderLayout());
         tablePanel.setOpaque(false);
@@ -684,35 +654,7 @@ public class TeacherDashboard extends JFrame {
 
             JOptionPane.showMessageDialog(this, "Attendance updated successfully!",
                     "Success", JOptionPane.INFORMATION_MESSAGE);
-
-            // Refresh the panel
-            refreshEditAttendancePanel();
-        }
-    }
-
-    private void refreshEditAttendancePanel() {
-        // Remove old edit attendance panel and create new one
-        Component[] components = contentPanel.getComponents();
-        for (int i = 0; i < components.length; i++) {
-            // Find and remove the panel by checking if it's currently shown as
-            // EDIT_ATTENDANCE
-            // We need to track the panel names, so we'll rebuild by removing and re-adding
         }
-        // Remove the existing panel by name
-        for (Component comp : contentPanel.getComponents()) {
-            contentPanel.remove(comp);
-        }
-        // Rebuild all panels
-        contentPanel.add(createDashboardPanel(), "DASHBOARD");
-        contentPanel.add(createMarkAttendancePanel(), "MARK_ATTENDANCE");
-        contentPanel.add(createEditAttendancePanel(), "EDIT_ATTENDANCE");
-        contentPanel.add(createReportsPanel(), "REPORTS");
-        contentPanel.add(createClassesPanel(), "CLASSES");
-        contentPanel.add(new SettingsPanel(this), "SETTINGS");
-
-        cardLayout.show(contentPanel, "EDIT_ATTENDANCE");
-        contentPanel.revalidate();
-        contentPanel.repaint();
     }
 
     private JPanel createReportsPanel() {
@@ -743,31 +685,31 @@ public class TeacherDashboard extends JFrame {
         defaultersPanel.setLayout(new BorderLayout());
         defaultersPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
-        JLabel defaultersTitle = new JLabel("Defaulters List - Below 75% Attendance");
+        AttendanceRule rule = dataStore.getAttendanceRule();
+        JLabel defaultersTitle = new JLabel(
+                String.format("Defaulters List - Below %.0f%% Attendance", rule.getMinPercentage()));
         defaultersTitle.setFont(ThemeColors.FONT_SUBTITLE);
         defaultersTitle.setForeground(ThemeColors.STATUS_WARNING);
         defaultersPanel.add(defaultersTitle, BorderLayout.NORTH);
 
         String[] columns = { "Roll No", "Name", "Subject", "Attendance %", "Status" };
 
-        // Get students below threshold from DataStore
-        double threshold = dataStore.getAttendanceRule().getMinPercentage();
+        // Students below the thresholds in a subject, from the store's running counters
+        DefaultersEngine defaulters = new DefaultersEngine(rule);
         List<Object[]> defaulterRows = new ArrayList<>();
 
-        for (Student student : dataStore.getAllStudents()) {
-            for (Subject subject : dataStore.getAllSubjects()) {
-                double percentage = dataStore.calculateStudentSubjectAttendance(student.getId(), subject.getId());
-                if (percentage > 0 && percentage < threshold) {
-                    String status = percentage < (threshold - 10) ? "Critical" : "Warning";
-                    defaulterRows.add(new Object[] {
-                            student.getRollNumber(),
-                            student.getName(),
-                            subject.getName(),
-                            String.format("%.1f%%", percentage),
-                            status
-                    });
-                }
-            }
+        for (AttendanceCount count : defaulters.findDefaulters(dataStore.getStudentSubjectCounts()).getAll()) {
+            Student student = dataStore.getStudentById(count.getStudentId());
+            Subject subject = dataStore.getSubjectById(count.getSubjectId());
+            if (student == null || subject == null)
+                continue;
+            defaulterRows.add(new Object[] {
+                    student.getRollNumber(),
+                    student.getName(),
+                    subject.getName(),
+                    String.format("%.1f%%", count.getPercentage()),
+                    defaulters.classify(count) == DefaultersEngine.Level.CRITICAL ? "Critical" : "Warning"
+            });
         }
 
         Object[][] data = defaulterRows.isEmpty()
@@ -819,7 +761,7 @@ public class TeacherDashboard extends JFrame {
             TeacherSubject ts = assignments.get(i);
             Subject subject = dataStore.getSubjectById(ts.getSubjectId());
             Section section = dataStore.getSectionById(ts.getSectionId());
-            int studentCount = dataStore.getStudentsBySection(ts.getSectionId()).size();
+            int studentCount = dataStore.countStudentsBySection(ts.getSectionId());
 
             // Calculate actual average attendance for this subject/section
             double avgAttendance = calculateSectionSubjectAttendance(ts.getSectionId(), ts.getSubjectId());
@@ -831,8 +773,9 @@ public class TeacherDashboard extends JFrame {
             };
         }
 
-        JTable table = createStyledTable(columns, data);
-        JScrollPane scrollPane = new JScrollPane(table);
+        classesTable = createStyledTable(columns, data);
+        classAssignments = assignments;
+        JScrollPane scrollPane = new JScrollPane(classesTable);
         scrollPane.setOpaque(false);
         scrollPane.getViewport().setBackground(ThemeColors.BG_MEDIUM);
         scrollPane.setBorder(BorderFactory.createEmptyBorder(20, 0, 0, 0));
@@ -902,6 +845,55 @@ public class TeacherDashboard extends JFrame {
         return (int) assignments.stream().map(TeacherSubject::getSectionId).distinct().count();
     }
 
+    private boolean isMarkedToday(int subjectId) {
+        return dataStore.getAttendanceByDate(LocalDate.now()).stream()
+                .anyMatch(a -> a.getSubjectId() == subjectId);
+    }
+
+    private int countPendingToday(List<TeacherSubject> assignments) {
+        int pendingCount = 0;
+        for (TeacherSubject ts : assignments) {
+            if (!isMarkedToday(ts.getSubjectId()))
+                pendingCount++;
+        }
+        return pendingCount;
+    }
+
+    /**
+     * Apply a batch of store changes to the tables and cards already on screen
+     */
+    private void onDataChanged(List<DataChangeEvent> events) {
+        Set<Integer> changedSubjects = new HashSet<>();
+        boolean changedToday = false;
+        for (DataChangeEvent event : events) {
+            if (event instanceof DataChangeEvent.AttendanceChanged changed) {
+                changedSubjects.add(changed.subjectId());
+                changedToday |= changed.date().equals(LocalDate.now());
+                if (historyModel != null)
+                    historyModel.attendanceChanged(changed.studentId(), changed.subjectId(), changed.date());
+            }
+        }
+        if (changedSubjects.isEmpty())
+            return;
+
+        if (changedToday && pendingTodayCard != null) {
+            pendingTodayCard.setValue(String.valueOf(countPendingToday(scheduleAssignments)));
+            for (int row = 0; row < scheduleAssignments.size(); row++) {
+                int subjectId = scheduleAssignments.get(row).getSubjectId();
+                if (changedSubjects.contains(subjectId))
+                    scheduleTable.setValueAt(isMarkedToday(subjectId) ? "Completed" : "Pending", row, 4);
+            }
+        }
+
+        for (int row = 0; row < classAssignments.size(); row++) {
+            TeacherSubject ts = classAssignments.get(row);
+            if (changedSubjects.contains(ts.getSubjectId())) {
+                double avgAttendance = calculateSectionSubjectAttendance(ts.getSectionId(), ts.getSubjectId());
+                classesTable.setValueAt(String.format("%.1f%%", avgAttendance), row, 3);
+            }
+        }
+    }
+
     /**
      * Calculate average attendance percentage for a subject in a section
      */
@@ -112,6 +112,9 @@ public class ThemeColors {
     // === MODE STATE ===
     public static boolean IS_DARK_MODE;
 
+    // Bumped on every style update so cached renderings can tell they are stale
+    private static int styleVersion;
+
     // Initialize on class load
     static {
         updateStyles();
@@ -220,6 +223,14 @@ public class ThemeColors {
 
         // Update UIManager defaults
         applyToUIManager(theme, mode);
+        styleVersion++;
+    }
+
+    /**
+     * Changes whenever the theme or mode changes
+     */
+    public static int getStyleVersion() {
+        return styleVersion;
     }
 
     /**